@@ -0,0 +1,18 @@
+#!/bin/sh
+# Runs the simulation with its position feed on and a sample radar client reading it over
+# loopback.
+#
+#   scripts/run-feed.sh [extra Main options...]
+#
+# The feed listens on port 47100. Build first with `mvn -q compile`; the simulation's output
+# goes to target/feed-sim.log, the client prints to the terminal until the simulation ends.
+set -e
+cd "$(dirname "$0")/.."
+
+port=47100
+java -cp target/classes org.example.Main --headless --speed=10 --feed=$port "$@" > target/feed-sim.log 2>&1 &
+sim=$!
+
+java -cp target/classes feed.FeedClient 127.0.0.1:$port || status=1
+wait "$sim" || status=1
+exit ${status:-0}
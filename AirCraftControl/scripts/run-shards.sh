@@ -0,0 +1,37 @@
+#!/bin/sh
+# Runs the simulation as N airspace shards, one JVM each, talking over loopback.
+#
+#   scripts/run-shards.sh BOUNDS [extra Main options...]
+#
+# BOUNDS are the x coordinates between shards, e.g. "15000" for two shards or
+# "10000,20000" for three. Shard k listens on port 47000+k. Build first with
+# `mvn -q compile`; each shard's output goes to target/shard-<k>.log.
+set -e
+cd "$(dirname "$0")/.."
+
+bounds=$1
+shift
+count=$(( $(echo "$bounds" | tr -cd ',' | wc -c) + 2 ))
+
+peers=""
+k=0
+while [ $k -lt $count ]; do
+    peers="${peers:+$peers,}127.0.0.1:$((47000 + k))"
+    k=$((k + 1))
+done
+
+pids=""
+k=0
+while [ $k -lt $count ]; do
+    java -cp target/classes org.example.Main --headless --shard=$k --shard-bounds="$bounds" \
+        --shard-peers="$peers" "$@" > "target/shard-$k.log" 2>&1 &
+    pids="$pids $!"
+    k=$((k + 1))
+done
+
+status=0
+for pid in $pids; do
+    wait "$pid" || status=1
+done
+echo "Shards finished; see target/shard-*.log"
+exit $status
@@ -0,0 +1,52 @@
+package benchmark;
+
+import aircraft.Aircraft;
+import manager.AirTrafficControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full ATC sweep over an airborne fleet, sequential and on a ForkJoin pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflictDetectionBenchmark {
+
+    private static final double SAFE_DISTANCE = 3000;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int aircraftCount;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private AirTrafficControl atc;
+
+    @Setup
+    public void setUp() {
+        List<Aircraft> fleet = Fleets.airborne(aircraftCount, SAFE_DISTANCE, 42);
+        atc = new AirTrafficControl(fleet, SAFE_DISTANCE, 1000);
+        atc.setParallelism(threads);
+    }
+
+    @Benchmark
+    public void checkForConflicts() {
+        atc.checkForConflicts();
+    }
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+import aircraft.Aircraft;
+import aircraft.FleetState;
+import aircraft.Route;
+import airport.Airport;
+import events.EventLog;
+import events.Verbosity;
+import simulation.SimulationClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds airborne fleets for the benchmarks through the public API.
+ */
+final class Fleets {
+
+    private Fleets() {
+    }
+
+    /**
+     * {@code size} aircraft scattered over a square whose area grows with the fleet, so the
+     * number of neighbours per aircraft (not the total) stays roughly constant.
+     */
+    static List<Aircraft> airborne(int size, double safeDistance, long seed) {
+        return airborne(new FleetState(), size, safeDistance, seed);
+    }
+
+    static List<Aircraft> airborne(FleetState store, int size, double safeDistance, long seed) {
+        EventLog.get().setVerbosity(Verbosity.OFF);
+        Random random = new Random(seed);
+        double side = Math.sqrt(size) * safeDistance * 2;
+
+        // Far-apart airports with no separation time: every takeoff is granted at once.
+        Airport from = new Airport(1, 0, 1, 0);
+        Airport to = new Airport(2, 1e12, 1, 0);
+
+        List<Aircraft> fleet = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Aircraft aircraft = store.add(i, 200 + random.nextInt(800), SimulationClock.realTime());
+            aircraft.assignRoute(new Route(from, to));
+            if (!aircraft.tryTakeOff()) {
+                throw new IllegalStateException("Aircraft " + i + " could not take off");
+            }
+            aircraft.setX(random.nextDouble() * side);
+            aircraft.setY(random.nextDouble() * side);
+            fleet.add(aircraft);
+        }
+        return fleet;
+    }
+}
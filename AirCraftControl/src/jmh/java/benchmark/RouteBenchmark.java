@@ -0,0 +1,50 @@
+package benchmark;
+
+import aircraft.Route;
+import airport.Airport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route waypoint operations as used by reroute and the flight update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+
+    private Route route;
+
+    @Setup
+    public void setUp() {
+        route = new Route(new Airport(1, 0, 1, 0), new Airport(2, 10000, 1, 0));
+    }
+
+    @Benchmark
+    public void addAndReachWaypoint(Blackhole blackhole) {
+        route.addWaypoint(500, 2000);
+        blackhole.consume(route.getTargetX());
+        blackhole.consume(route.getTargetY());
+        route.reachWaypoint();
+    }
+
+    @Benchmark
+    public void currentTargetWithoutWaypoints(Blackhole blackhole) {
+        blackhole.consume(route.getTargetX());
+        blackhole.consume(route.getTargetY());
+    }
+}
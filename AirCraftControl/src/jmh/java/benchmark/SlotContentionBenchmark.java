@@ -0,0 +1,77 @@
+package benchmark;
+
+import aircraft.Aircraft;
+import aircraft.FleetState;
+import airport.Airport;
+import airport.AirportControlManager;
+import airport.Slot;
+import events.EventLog;
+import events.Verbosity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import simulation.SimulationClock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Acquire/release round trips on one airport from many threads at once. Separation time is
+ * zero, so this measures the allocator and its queue, not runway rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class SlotContentionBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int slots;
+
+    private AirportControlManager manager;
+
+    @State(Scope.Thread)
+    public static class Pilot {
+        private static final AtomicInteger IDS = new AtomicInteger();
+        Aircraft aircraft;
+
+        @Setup
+        public void setUp() {
+            aircraft = new FleetState().add(IDS.incrementAndGet(), 1, SimulationClock.realTime());
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        EventLog.get().setVerbosity(Verbosity.OFF);
+        manager = new Airport(1, 0, slots, 0).getControlManager();
+    }
+
+    @Benchmark
+    public void blockingAcquireRelease(Pilot pilot) {
+        Slot slot = manager.requestTakeoffPermission(pilot.aircraft);
+        manager.releaseSlot(slot);
+    }
+
+    @Benchmark
+    public void tryAcquireRelease(Pilot pilot, Blackhole blackhole) {
+        Slot slot = manager.tryTakeoffPermission(pilot.aircraft);
+        if (slot != null) {
+            manager.releaseSlot(slot);
+        }
+        blackhole.consume(slot);
+    }
+}
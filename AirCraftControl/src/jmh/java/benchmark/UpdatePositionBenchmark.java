@@ -0,0 +1,58 @@
+package benchmark;
+
+import aircraft.Aircraft;
+import aircraft.FleetState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aircraft.updatePosition throughput, one aircraft at a time and as one bulk pass over the
+ * FleetState columns. Routes are so long that nobody lands during a run.
+ * Run with {@code -prof gc} to see the allocation rate per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdatePositionBenchmark {
+
+    private static final int FLEET_SIZE = 1000;
+
+    private Aircraft[] fleet;
+    private FleetState store;
+
+    @Setup
+    public void setUp() {
+        store = new FleetState();
+        List<Aircraft> aircraft = Fleets.airborne(store, FLEET_SIZE, 3000, 7);
+        fleet = aircraft.toArray(new Aircraft[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FLEET_SIZE)
+    public void updatePosition() {
+        for (Aircraft aircraft : fleet) {
+            aircraft.updatePosition(0.001);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FLEET_SIZE)
+    public void advanceStore() {
+        store.advance(0, FLEET_SIZE, 0.001, 0);
+    }
+}
@@ -2,53 +2,127 @@ package aircraft;
 
 import airport.Airport;
 import airport.AirportControlManager;
+import airport.Reservation;
 import airport.Slot;
-
-public class Aircraft extends Thread {
-
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import events.EventLog;
+import events.EventType;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.RouteChangeEvent;
+import metrics.TickJitterEvent;
+import simulation.SimulationClock;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+public class Aircraft implements Runnable {
+
+    private static final Histogram TICK_JITTER = Metrics.get().histogram("aircraft.tick.jitter.ms");
+    private static final LongAdder REROUTES = Metrics.get().counter("aircraft.reroutes");
+    private static final LongAdder REVERTS = Metrics.get().counter("aircraft.reverts");
+    private static final LongAdder LEGS = Metrics.get().counter("aircraft.legs");
+
+    // Position, velocity, speed, cruise profile and flags live in the FleetState columns at
+    // [chunk][offset]; this object keeps the identity, the route and the lock.
+    private final FleetState state;
+    private final int slot;
+    private final int chunk;
+    private final int offset;
     private final int Id;
-    private double x, y; // 2D position
     private final int speed;
 
-    private boolean tookOff;
-    private boolean landed;
-
-    private boolean conflictAvoidanceActive = false; // new flag
+    private Reservation takeoffReservation;
+    private Reservation landingReservation;
 
     private Route route;
-    private double cruiseAltitude;
-    private double cruiseX; // X position where altitude is max
-    private double[] currentTarget;  // Next target point (waypoint or destination)
     private Route originalRoute;
+    private Itinerary itinerary;       // legs after the current route; null until one is added
+    private long landedAtMillis;       // last landing, where the next leg's turnaround starts
+    private long earliestTakeoffMillis; // of the current leg: turnaround and schedule allowing
+    private final SimulationClock clock;
 
-    public Aircraft(int id, int speed) {
+    // Guards position and flags: writers take the write lock, FleetSnapshot reads optimistically.
+    private final StampedLock stateLock = new StampedLock();
+
+    Aircraft(FleetState state, int id, int speed, SimulationClock clock) {
+        this.state = state;
         this.Id = id;
         this.speed = speed;
-        this.tookOff = false;
-        this.landed = true; // initially landed at origin airport
+        this.clock = clock;
         this.route=null;
+        this.slot = state.register(this, id, speed);
+        this.chunk = slot >>> FleetState.CHUNK_BITS;
+        this.offset = slot & FleetState.CHUNK_MASK;
     }
 
     public void assignRoute(Route route) {
+        long stamp = stateLock.writeLock();
+        try {
+            resetForRoute(route);
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+        System.out.println("Aircraft " + Id + " assigned route from " + route.getFromAirport().getX() + " to " +
+                route.getToAirport().getX() + ", cruiseAltitude = " + getCruiseAltitude() + ", cruiseX = " + getCruiseX());
+    }
+
+    private void resetForRoute(Route route) {
         this.route = route;
         this.originalRoute = route;
-        this.tookOff = false;
-        this.landed = true;
+        this.takeoffReservation = null;
+        this.landingReservation = null;
+        this.earliestTakeoffMillis = 0;
+        state.flags[chunk][offset] = FleetState.LANDED;
 
-        this.x = route.getFromAirport().getX();
-        this.y = 0; // coordonatele intiaile la aeroportul din care porneste
+        state.xs[chunk][offset] = route.getFromAirport().getX();
+        state.ys[chunk][offset] = 0; // coordonatele intiaile la aeroportul din care porneste
+        state.vxs[chunk][offset] = 0;
+        state.vys[chunk][offset] = 0;
 
         double x1 = route.getFromAirport().getX();
         double x2 = route.getToAirport().getX();
+        state.fromXs[chunk][offset] = x1;
+        state.toXs[chunk][offset] = x2;
 
-        this.cruiseAltitude = Math.abs(x2 - x1) / 2.0;
-        this.cruiseX = (x1 + x2) / 2.0; // Midpoint in X where the aircraft reaches cruiseAltitude
+        state.cruiseAltitudes[chunk][offset] = Math.abs(x2 - x1) / 2.0;
+        state.cruiseXs[chunk][offset] = (x1 + x2) / 2.0; // Midpoint in X where the aircraft reaches cruiseAltitude
+    }
 
-        // Initial target is the destination (ground level)
-        this.currentTarget = new double[]{ route.getToAirport().getX(), 0 };
+    /**
+     * Continues a flight handed over by another shard: already airborne on {@code route}
+     * (with any avoidance waypoints already added to it) at the given position.
+     */
+    public void resumeFlight(Route route, double x, double y, boolean avoiding) {
+        long stamp = stateLock.writeLock();
+        try {
+            resetForRoute(route);
+            state.xs[chunk][offset] = x;
+            state.ys[chunk][offset] = y;
+            state.flags[chunk][offset] = avoiding ? FleetState.TOOK_OFF | FleetState.CONFLICT_AVOIDANCE
+                    : FleetState.TOOK_OFF;
+            updateVelocity();
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
 
-        System.out.println("Aircraft " + Id + " assigned route from " + x1 + " to " + x2 +
-                ", cruiseAltitude = " + cruiseAltitude + ", cruiseX = " + cruiseX);
+    /**
+     * Marks the aircraft as flown on by another shard. It then counts as landed here, so it
+     * is no longer advanced or checked for conflicts.
+     */
+    public void handOff() {
+        long stamp = stateLock.writeLock();
+        try {
+            state.flags[chunk][offset] |= FleetState.TOOK_OFF | FleetState.LANDED | FleetState.HANDED_OFF;
+            state.vxs[chunk][offset] = 0;
+            state.vys[chunk][offset] = 0;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
     }
 
     @Override
@@ -57,52 +131,209 @@ public class Aircraft extends Thread {
             System.out.println("Aircraft " + Id + " has no route assigned!");
             return;
         }
+        while (flyLeg()) {
+            // Landing starts the next leg of the itinerary, if any, putting the aircraft back on
+            // the ground; without one it stays landed and the flight is over.
+            boolean nextLegStarted = !hasTakenOff();
+            if (!nextLegStarted) {
+                break;
+            }
+        }
+    }
 
-        Airport originAirport = route.getFromAirport();
-        AirportControlManager originControl = originAirport.getControlManager();
-
-        // 1. Request takeoff permission
-        Slot takeoffSlot = originControl.requestTakeoffPermission(this);
+    // Flies the current route from booking to landing; false if it could not finish.
+    private boolean flyLeg() {
+        // 1. Book the flight and wait on the ground for the takeoff time
+        Slot takeoffSlot = awaitTakeoff();
         if (takeoffSlot == null) {
             System.out.println("Aircraft " + Id + " failed to obtain takeoff permission.");
-            return;
+            return false;
         }
-        System.out.println("Aircraft " + Id + " has TAKEN OFF from Airport " + originAirport.getId() + ", slot " + takeoffSlot.getId());
-
-        // After takeoff release the slot
-        originControl.releaseSlot(takeoffSlot);
-
-        // Start flying toward destination
-        tookOff = true;
-        landed = false;
+        takeOff(takeoffSlot);
 
         long updateInterval = 1000; // ms
-        while (!landed && !Thread.currentThread().isInterrupted()) {
+        while (!isLanded() && !Thread.currentThread().isInterrupted()) {
             try {
                 updatePosition(updateInterval / 1000.0);
-                Thread.sleep(updateInterval);
+                long sleptFrom = clock.currentTimeMillis();
+                clock.sleep(updateInterval);
+                recordJitter(clock.currentTimeMillis() - sleptFrom - updateInterval);
             } catch (InterruptedException e) {
                 System.out.println("Aircraft " + Id + " interrupted during flight.");
                 Thread.currentThread().interrupt();
-                return;
+                return false;
             }
         }
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
         System.out.println("Aircraft " + Id + " has COMPLETED its route.");
+        return true;
     }
 
-    private void updatePosition(double timeElapsedInSeconds) {
-        if (!tookOff || landed || route == null) return;
+    private void recordJitter(long latenessMillis) {
+        TICK_JITTER.record(latenessMillis);
+        TickJitterEvent event = new TickJitterEvent();
+        if (event.shouldCommit()) {
+            event.aircraftId = Id;
+            event.latenessMillis = latenessMillis;
+            event.commit();
+        }
+    }
 
-        double[] target;
-        if (!route.getWaypoints().isEmpty()) {
-            target = route.getWaypoints().peek();
-        } else {
-            target = new double[]{ route.getToAirport().getX(), 0 };
+    private Slot awaitTakeoff() {
+        AirportControlManager originControl = route.getFromAirport().getControlManager();
+        reserveFlight(Math.max(clock.currentTimeMillis(), earliestTakeoffMillis));
+        while (true) {
+            long waitMillis = takeoffReservation.getTimeMillis() - clock.currentTimeMillis();
+            try {
+                if (waitMillis > 0) {
+                    clock.sleep(waitMillis);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelReservations();
+                System.out.println("Aircraft " + Id + " interrupted while waiting for takeoff.");
+                return null;
+            }
+            Slot slot = originControl.claim(this, takeoffReservation);
+            if (slot != null) {
+                return slot;
+            }
+            reserveFlight(clock.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Books a takeoff at the origin and a landing at the destination that the flight can
+     * keep: the landing is booked at the takeoff time plus the flight time, and if the
+     * destination is busy then, the takeoff moves later until both fit. Holding on the
+     * ground like this means the aircraft never has to wait in the air.
+     */
+    private void reserveFlight(long fromMillis) {
+        cancelReservations();
+        AirportControlManager origin = route.getFromAirport().getControlManager();
+        AirportControlManager destination = route.getToAirport().getControlManager();
+        long flightMillis = Trajectory.of(route, speed, route.getFromAirport().getX(), 0, FleetState.TOOK_OFF, 0,
+                getCruiseX(), getCruiseAltitude()).getArrivalMillis();
+        long takeoff = fromMillis;
+        while (true) {
+            takeoffReservation = origin.reserveTakeoff(this, takeoff);
+            long eta = takeoffReservation.getTimeMillis() + flightMillis;
+            landingReservation = destination.reserveLanding(this, eta);
+            if (landingReservation.getTimeMillis() - eta < 1000) {
+                return; // the landing second is the one the aircraft arrives in
+            }
+            takeoff = landingReservation.getTimeMillis() - flightMillis;
+            cancelReservations();
+        }
+    }
+
+    private void cancelReservations() {
+        if (takeoffReservation != null) {
+            takeoffReservation.getAirport().cancel(takeoffReservation);
+            takeoffReservation = null;
+        }
+        if (landingReservation != null) {
+            landingReservation.getAirport().cancel(landingReservation);
+            landingReservation = null;
+        }
+    }
+
+    /**
+     * Non-blocking takeoff used without reservations: takes off if the origin airport grants
+     * permission right now, otherwise the aircraft stays on the ground until the next tick.
+     */
+    public boolean tryTakeOff() {
+        if (route == null || hasTakenOff()) {
+            return false;
+        }
+        Slot takeoffSlot = route.getFromAirport().getControlManager().tryTakeoffPermission(this);
+        if (takeoffSlot == null) {
+            return false;
+        }
+        takeOff(takeoffSlot);
+        return true;
+    }
+
+    /**
+     * Books the flight's takeoff and landing times without blocking; the tick engine then
+     * calls {@link #takeOffIfDue()} every tick. Returns false if it has no route or already
+     * booked.
+     */
+    public boolean requestTakeOff() {
+        if (route == null || hasTakenOff() || takeoffReservation != null) {
+            return false;
+        }
+        reserveFlight(Math.max(clock.currentTimeMillis(), earliestTakeoffMillis));
+        return true;
+    }
+
+    /**
+     * Takes off if the booked takeoff time has come. Should the slot be taken when it does,
+     * the flight is booked again.
+     */
+    public boolean takeOffIfDue() {
+        if (takeoffReservation == null || hasTakenOff()
+                || clock.currentTimeMillis() < takeoffReservation.getTimeMillis()) {
+            return false;
+        }
+        Slot slot = route.getFromAirport().getControlManager().claim(this, takeoffReservation);
+        if (slot == null) {
+            reserveFlight(clock.currentTimeMillis());
+            return false;
+        }
+        takeOff(slot);
+        return true;
+    }
+
+    /** Booked takeoff time, or -1 if the flight is not booked. */
+    public long getTakeoffTimeMillis() {
+        Reservation takeoff = takeoffReservation;
+        return takeoff == null ? -1 : takeoff.getTimeMillis();
+    }
+
+    /** The landing booked at the destination, or null. */
+    public Reservation getLandingReservation() {
+        return landingReservation;
+    }
+
+    private void takeOff(Slot takeoffSlot) {
+        AirportControlManager originControl = route.getFromAirport().getControlManager();
+        EventLog.get().publish(EventType.TAKEN_OFF, Id, takeoffSlot.getId(), route.getFromAirport().getId(),
+                getX(), getY(), clock.currentTimeMillis());
+
+        // After takeoff release the slot
+        originControl.releaseSlot(takeoffSlot);
+
+        // Start flying toward destination
+        long stamp = stateLock.writeLock();
+        try {
+            state.flags[chunk][offset] = (byte) (state.flags[chunk][offset] & ~FleetState.LANDED | FleetState.TOOK_OFF);
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    public void updatePosition(double timeElapsedInSeconds) {
+        long stamp = stateLock.writeLock();
+        try {
+            advance(timeElapsedInSeconds);
+        } finally {
+            stateLock.unlockWrite(stamp);
         }
-        currentTarget = target;
+    }
 
-        double targetX = target[0];
-        double targetY = target[1];
+    private void advance(double timeElapsedInSeconds) {
+        if (!hasTakenOff() || isLanded() || route == null) return;
+
+        // Next waypoint, or the destination (ground level)
+        boolean toWaypoint = route.hasWaypoints();
+        double targetX = route.getTargetX();
+        double targetY = route.getTargetY();
+        double x = state.xs[chunk][offset];
+        double y;
 
         double distanceToTravel = speed * timeElapsedInSeconds;
         double remainingDistanceX = Math.abs(targetX - x);
@@ -113,77 +344,356 @@ public class Aircraft extends Thread {
             x += Math.signum(targetX - x) * stepX;
         }
 
-        if (conflictAvoidanceActive && !route.getWaypoints().isEmpty()) {
-            y = currentTarget[1];
+        if (isInConflictAvoidance() && toWaypoint) {
+            y = targetY;
         }
         else {
             // Normal flight path
-            double x1 = route.getFromAirport().getX();
-            double x2 = route.getToAirport().getX();
-            if (Math.abs(x - cruiseX) < 1e-3) {
-                y = cruiseAltitude;
-            } else if ((x1 < x2 && x < cruiseX) || (x1 > x2 && x > cruiseX)) {
-                double slope = cruiseAltitude / (cruiseX - x1);
-                y = slope * (x - x1);
-            } else {
-                double slope = cruiseAltitude / (x2 - cruiseX);
-                y = cruiseAltitude - slope * (x - cruiseX);
-            }
-            if (y < 0) y = 0;
+            y = FleetState.profileAltitude(x, state.fromXs[chunk][offset], state.toXs[chunk][offset],
+                    getCruiseX(), getCruiseAltitude());
         }
+        state.xs[chunk][offset] = x;
+        state.ys[chunk][offset] = y;
 
         // Check if reached current target
         boolean atTargetX = Math.abs(x - targetX) < 1e-3;
         boolean atTargetY = Math.abs(y - targetY) < 1e-3;
 
         if (atTargetX && atTargetY) {
-            if (!route.getWaypoints().isEmpty()) {
+            if (toWaypoint) {
                 route.reachWaypoint();
-                System.out.println("Aircraft " + Id + " reached waypoint at (" + x + ", " + y + ")");
-            } else if (!landed) {
-                landed = true;
-                System.out.println("Aircraft " + Id + " has LANDED at Airport " + route.getToAirport().getId());
+                EventLog.get().publish(EventType.WAYPOINT_REACHED, Id, 0, 0, x, y, clock.currentTimeMillis());
+            } else if (!isLanded()) {
+                state.flags[chunk][offset] |= FleetState.LANDED;
+                arrive(clock.currentTimeMillis());
+                if (!hasTakenOff()) {
+                    return; // on the ground for the next leg
+                }
             }
         }
-        System.out.printf("Aircraft %d position updated to (%.0f, %.0f)%n", Id, x, y);
+        updateVelocity();
+        EventLog.get().publish(EventType.POSITION, Id, 0, 0, x, y, clock.currentTimeMillis());
     }
 
-    public void reroute() {
-        if (!conflictAvoidanceActive) {
-            conflictAvoidanceActive = true;
+    /**
+     * Velocity the aircraft will fly at from here: full speed toward the current target,
+     * climbing or descending along the cruise profile, level while avoiding a conflict.
+     */
+    private void updateVelocity() {
+        if (isLanded()) {
+            state.vxs[chunk][offset] = 0;
+            state.vys[chunk][offset] = 0;
+            return;
+        }
+        double x = state.xs[chunk][offset];
+        double vx = Math.signum(route.getTargetX() - x) * speed;
+        state.vxs[chunk][offset] = vx;
+        if (isInConflictAvoidance() && route.hasWaypoints()) {
+            state.vys[chunk][offset] = 0;
+            return;
+        }
+        state.vys[chunk][offset] = FleetState.profileSlope(x, state.fromXs[chunk][offset], state.toXs[chunk][offset],
+                getCruiseX(), getCruiseAltitude()) * vx;
+    }
 
+    public void reroute() {
+        long stamp = stateLock.writeLock();
+        try {
             double rerouteYOffset = 2000; // How much to climb
             double rerouteXOffset = 500;  // Move forward in X
+            addAvoidanceWaypoint(getX() + rerouteXOffset, getY() + rerouteYOffset);
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
 
-            double rerouteX = this.x + rerouteXOffset;
-            double rerouteY = this.y + rerouteYOffset;
+    /**
+     * Enters conflict avoidance through a waypoint chosen by the caller, such as a level
+     * assigned to every aircraft of a conflict cluster at once. Does nothing if the aircraft
+     * is already avoiding.
+     */
+    public void rerouteVia(double x, double y) {
+        long stamp = stateLock.writeLock();
+        try {
+            addAvoidanceWaypoint(x, y);
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private void addAvoidanceWaypoint(double rerouteX, double rerouteY) {
+        if (!isInConflictAvoidance()) {
+            state.flags[chunk][offset] |= FleetState.CONFLICT_AVOIDANCE;
 
             // waypoint into the aircrafts route
             route.addWaypoint(rerouteX, rerouteY);
 
-            System.out.println("Aircraft " + Id + " activated conflict avoidance. Waypoint added: (" + rerouteX + ", " + rerouteY + ")");
+            EventLog.get().publish(EventType.REROUTE, Id, 0, 0, rerouteX, rerouteY, clock.currentTimeMillis());
+            REROUTES.increment();
+            commitRouteChange(false);
         }
     }
 
 
 
     public void revertToOriginalRoute() {
-        if (conflictAvoidanceActive) {
-            conflictAvoidanceActive = false;
-            route.getWaypoints().clear();
+        long stamp = stateLock.writeLock();
+        try {
+            clearAvoidanceWaypoints();
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private void clearAvoidanceWaypoints() {
+        if (isInConflictAvoidance()) {
+            state.flags[chunk][offset] &= ~FleetState.CONFLICT_AVOIDANCE;
+            route.clearWaypoints();
+
+            EventLog.get().publish(EventType.REVERT, Id, 0, 0, getCruiseAltitude(), getY(), clock.currentTimeMillis());
+            REVERTS.increment();
+            commitRouteChange(true);
+        }
+    }
+
+    private void commitRouteChange(boolean revert) {
+        RouteChangeEvent event = new RouteChangeEvent();
+        if (event.shouldCommit()) {
+            event.aircraftId = Id;
+            event.revert = revert;
+            event.x = getX();
+            event.y = getY();
+            event.commit();
+        }
+    }
+
+
+    /**
+     * Appends a leg to the aircraft's itinerary: after the legs already planned, fly on to
+     * {@code destination}, taking off no earlier than {@code departureMillis} and no sooner
+     * than {@code turnaroundMillis} after landing at its origin. An aircraft already landed
+     * with nothing else planned starts the leg right away, reusing its route; otherwise the leg
+     * starts on landing. Called by whoever drives the aircraft, never while it flies on its
+     * own thread.
+     */
+    public void addLeg(Airport destination, long departureMillis, long turnaroundMillis) {
+        if (route == null) {
+            throw new IllegalStateException("Aircraft " + Id + " has no route to continue from");
+        }
+        if (turnaroundMillis < 0) {
+            throw new IllegalArgumentException("turnaround must not be negative: " + turnaroundMillis);
+        }
+        if (itinerary == null) {
+            itinerary = new Itinerary();
+        }
+        itinerary.add(destination, departureMillis, turnaroundMillis);
+        if (hasTakenOff() && isLanded() && !isHandedOff() && itinerary.size() == 1) {
+            long stamp = stateLock.writeLock();
+            try {
+                beginNextLeg();
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /** Legs planned after the current route; null if none was ever added. */
+    public Itinerary getItinerary() {
+        return itinerary;
+    }
+
+    /** Where the aircraft will be once its current route and every planned leg are flown. */
+    public Airport getFinalDestination() {
+        if (itinerary != null && !itinerary.isEmpty()) {
+            return itinerary.getDestination(itinerary.size() - 1);
+        }
+        return route == null ? null : route.getToAirport();
+    }
+
+    /**
+     * Books the landing with the destination and starts the next leg, if one is planned. Run
+     * by the single writer of the slot, right after the LANDED flag was set.
+     */
+    void arrive(long nowMillis) {
+        Airport destination = route.getToAirport();
+        destination.getControlManager().recordLanding(this, landingReservation);
+        EventLog.get().publish(EventType.LANDED, Id, 0, destination.getId(), getX(), getY(), nowMillis);
+        landedAtMillis = nowMillis;
+        if (itinerary != null && !itinerary.isEmpty()) {
+            beginNextLeg();
+        }
+    }
+
+    // Puts the landed aircraft back on the ground at its destination for the next leg, reusing
+    // the route and its waypoint buffers.
+    private void beginNextLeg() {
+        Airport origin = route.getToAirport();
+        Airport destination = itinerary.getDestination(0);
+        long earliest = Math.max(landedAtMillis + itinerary.getTurnaroundMillis(0), itinerary.getDepartureMillis(0));
+        itinerary.remove();
+        route.reset(origin, destination);
+        resetForRoute(route);
+        earliestTakeoffMillis = earliest;
+        LEGS.increment();
+        EventLog.get().publish(EventType.LEG_STARTED, Id, origin.getId(), destination.getId(),
+                (earliest - landedAtMillis) / 1000.0, 0, landedAtMillis);
+        state.regrounded(slot);
+    }
+
+    /**
+     * Writes what this view holds beyond the store's columns: the route and its waypoints,
+     * the booked takeoff and landing, and the legs still to fly. Airports are written by id.
+     */
+    void writeTo(CheckpointWriter out) throws IOException {
+        if (route == null) {
+            out.putByte((byte) 0);
+            return;
+        }
+        out.putByte((byte) 1);
+        out.putInt(route.getFromAirport().getId()).putInt(route.getToAirport().getId());
+        int waypoints = route.getWaypointCount();
+        out.putInt(waypoints);
+        for (int i = 0; i < waypoints; i++) {
+            out.putDouble(route.getWaypointX(i)).putDouble(route.getWaypointY(i));
+        }
+        writeReservation(out, takeoffReservation);
+        writeReservation(out, landingReservation);
+        out.putLong(landedAtMillis).putLong(earliestTakeoffMillis);
+        int legs = itinerary == null ? 0 : itinerary.size();
+        out.putInt(legs);
+        for (int i = 0; i < legs; i++) {
+            out.putInt(itinerary.getDestination(i).getId())
+                    .putLong(itinerary.getDepartureMillis(i))
+                    .putLong(itinerary.getTurnaroundMillis(i));
+        }
+    }
+
+    /**
+     * Restores what {@link #writeTo} wrote. The columns have been restored already and are
+     * left alone; the reservations' bookings come back with the airports' calendars.
+     */
+    void readFrom(CheckpointReader in, Map<Integer, Airport> airports) {
+        if (in.getByte() == 0) {
+            return;
+        }
+        Route restored = new Route(airport(airports, in.getInt()), airport(airports, in.getInt()));
+        int waypoints = in.getCount(16);
+        for (int i = 0; i < waypoints; i++) {
+            restored.addWaypoint(in.getDouble(), in.getDouble());
+        }
+        route = restored;
+        originalRoute = restored;
+        takeoffReservation = readReservation(in, restored.getFromAirport(), false);
+        landingReservation = readReservation(in, restored.getToAirport(), true);
+        landedAtMillis = in.getLong();
+        earliestTakeoffMillis = in.getLong();
+        int legs = in.getCount(4 + 8 + 8);
+        if (legs > 0) {
+            itinerary = new Itinerary();
+            for (int i = 0; i < legs; i++) {
+                itinerary.add(airport(airports, in.getInt()), in.getLong(), in.getLong());
+            }
+        }
+    }
+
+    private static void writeReservation(CheckpointWriter out, Reservation reservation) throws IOException {
+        if (reservation == null) {
+            out.putByte((byte) 0);
+        } else {
+            out.putByte((byte) 1).putLong(reservation.getTimeMillis()).putLong(reservation.getRequestedAt());
+        }
+    }
 
-            System.out.println("Aircraft " + Id + " reverted to original route. CruiseAltitude: " + cruiseAltitude);
+    private Reservation readReservation(CheckpointReader in, Airport airport, boolean landing) {
+        if (in.getByte() == 0) {
+            return null;
         }
+        long time = in.getLong();
+        return airport.getControlManager().restoreReservation(Id, landing, time, in.getLong());
     }
 
+    private Airport airport(Map<Integer, Airport> airports, int id) {
+        Airport airport = airports.get(id);
+        if (airport == null) {
+            throw new IllegalArgumentException("Aircraft " + Id + " flies to or from unknown Airport " + id);
+        }
+        return airport;
+    }
+
+    /**
+     * The flight ahead from the current position, taken as of now, in closed form. Positions
+     * and the arrival time can then be read at any time without stepping the aircraft.
+     */
+    public Trajectory getTrajectory() {
+        long stamp = stateLock.readLock();
+        try {
+            return Trajectory.of(route, speed, getX(), getY(), state.flags[chunk][offset], clock.currentTimeMillis(),
+                    getCruiseX(), getCruiseAltitude());
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    /** Expected landing time at the destination; -1 before takeoff. */
+    public long getEstimatedArrivalMillis() {
+        return getTrajectory().getArrivalMillis();
+    }
 
     public int getAircraftId() { return Id; }
-    public double getX() { return x; }
-    public double getY() { return y; }
-    public boolean isLanded() { return landed; }
-    public boolean hasTakenOff() { return tookOff; }
-    public boolean isInConflictAvoidance() { return conflictAvoidanceActive; }
-
-    public void setX(double x) { this.x = x; }
-    public void setY(double y) { this.y = y; }
+    public int getSpeed() { return speed; }
+    public Route getRoute() { return route; }
+    public FleetState getFleetState() { return state; }
+    public int getSlot() { return slot; }
+    public double getX() { return state.xs[chunk][offset]; }
+    public double getY() { return state.ys[chunk][offset]; }
+    public double getVelocityX() { return state.vxs[chunk][offset]; }
+    public double getVelocityY() { return state.vys[chunk][offset]; }
+    public double getCruiseAltitude() { return state.cruiseAltitudes[chunk][offset]; }
+    public double getCruiseX() { return state.cruiseXs[chunk][offset]; }
+    public boolean isLanded() { return (state.flags[chunk][offset] & FleetState.LANDED) != 0; }
+    public boolean hasTakenOff() { return (state.flags[chunk][offset] & FleetState.TOOK_OFF) != 0; }
+    public boolean isHandedOff() { return (state.flags[chunk][offset] & FleetState.HANDED_OFF) != 0; }
+    public boolean isInConflictAvoidance() { return (state.flags[chunk][offset] & FleetState.CONFLICT_AVOIDANCE) != 0; }
+
+    public void setX(double x) {
+        long stamp = stateLock.writeLock();
+        try {
+            state.xs[chunk][offset] = x;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    public void setY(double y) {
+        long stamp = stateLock.writeLock();
+        try {
+            state.ys[chunk][offset] = y;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies a consistent view of position and flags into a snapshot, without blocking
+     * unless a writer keeps interfering.
+     */
+    void copyStateTo(FleetSnapshot frame, int index) {
+        long stamp = stateLock.tryOptimisticRead();
+        double cx = getX(), cy = getY();
+        double cvx = getVelocityX(), cvy = getVelocityY();
+        byte f = state.flags[chunk][offset];
+        if (!stateLock.validate(stamp)) {
+            stamp = stateLock.readLock();
+            try {
+                cx = getX();
+                cy = getY();
+                cvx = getVelocityX();
+                cvy = getVelocityY();
+                f = state.flags[chunk][offset];
+            } finally {
+                stateLock.unlockRead(stamp);
+            }
+        }
+        frame.set(index, this, cx, cy, cvx, cvy, f);
+    }
 }
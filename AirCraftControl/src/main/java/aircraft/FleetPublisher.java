@@ -0,0 +1,49 @@
+package aircraft;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Publishes one {@link FleetSnapshot} per tick. The writer captures a new frame after the
+ * fleet has been updated and swaps it in with a single volatile write; readers always get
+ * the latest complete frame and never block the writer.
+ */
+public class FleetPublisher {
+
+    private volatile FleetSnapshot latest;
+    private long epoch = 0;
+    private final List<Consumer<FleetSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Called by the single writer (the engine tick) once all aircraft have moved. */
+    public FleetSnapshot publish(List<Aircraft> fleet, long timeMillis) {
+        return publish(FleetSnapshot.capture(fleet, ++epoch, timeMillis));
+    }
+
+    /** Same as {@link #publish(List, long)}, copying the store's columns in bulk. */
+    public FleetSnapshot publish(FleetState fleet, long timeMillis) {
+        return publish(FleetSnapshot.capture(fleet, ++epoch, timeMillis));
+    }
+
+    /** Publishes a frame built elsewhere, e.g. one read back from a recording. */
+    public FleetSnapshot publish(FleetSnapshot frame) {
+        latest = frame;
+        for (Consumer<FleetSnapshot> listener : listeners) {
+            listener.accept(frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Hands every published frame to {@code listener}, on the publishing thread, right after
+     * it became the latest one.
+     */
+    public void addListener(Consumer<FleetSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /** Latest published frame, or null if nothing has been published yet. */
+    public FleetSnapshot latest() {
+        return latest;
+    }
+}
@@ -0,0 +1,172 @@
+package aircraft;
+
+import java.util.List;
+
+/**
+ * Immutable frame of the whole fleet's positions, velocities and flags at one moment. Every aircraft's
+ * entry is internally consistent (x and y come from the same update), so readers such as
+ * ATC and the GUI can use a frame without locking while the fleet keeps flying.
+ */
+public final class FleetSnapshot {
+
+    private static final byte TOOK_OFF = FleetState.TOOK_OFF;
+    private static final byte LANDED = FleetState.LANDED;
+    private static final byte CONFLICT_AVOIDANCE = FleetState.CONFLICT_AVOIDANCE;
+
+    private final long epoch;
+    private final long timeMillis;
+    private final Aircraft[] aircraft;
+    private final int[] ids;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] vxs;
+    private final double[] vys;
+    private final byte[] flags;
+
+    private FleetSnapshot(long epoch, long timeMillis, int size) {
+        this(epoch, timeMillis, new Aircraft[size], new int[size], new double[size], new double[size],
+                new double[size], new double[size], new byte[size]);
+    }
+
+    private FleetSnapshot(long epoch, long timeMillis, Aircraft[] aircraft, int[] ids, double[] xs, double[] ys,
+                          double[] vxs, double[] vys, byte[] flags) {
+        this.epoch = epoch;
+        this.timeMillis = timeMillis;
+        this.aircraft = aircraft;
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.vxs = vxs;
+        this.vys = vys;
+        this.flags = flags;
+    }
+
+    public static FleetSnapshot capture(List<Aircraft> fleet, long epoch, long timeMillis) {
+        FleetSnapshot frame = new FleetSnapshot(epoch, timeMillis, fleet.size());
+        for (int i = 0; i < frame.aircraft.length; i++) {
+            fleet.get(i).copyStateTo(frame, i);
+        }
+        return frame;
+    }
+
+    /**
+     * Copies the first {@code fleet.size()} slots of a store column by column. The caller must
+     * be the store's only writer at this point (the engine tick, between updates).
+     */
+    public static FleetSnapshot capture(FleetState fleet, long epoch, long timeMillis) {
+        int size = fleet.size();
+        FleetSnapshot frame = new FleetSnapshot(epoch, timeMillis, size);
+        for (int from = 0; from < size; from += FleetState.CHUNK_SIZE) {
+            int c = from >>> FleetState.CHUNK_BITS;
+            int n = Math.min(FleetState.CHUNK_SIZE, size - from);
+            System.arraycopy(fleet.views[c], 0, frame.aircraft, from, n);
+            System.arraycopy(fleet.ids[c], 0, frame.ids, from, n);
+            System.arraycopy(fleet.xs[c], 0, frame.xs, from, n);
+            System.arraycopy(fleet.ys[c], 0, frame.ys, from, n);
+            System.arraycopy(fleet.vxs[c], 0, frame.vxs, from, n);
+            System.arraycopy(fleet.vys[c], 0, frame.vys, from, n);
+            System.arraycopy(fleet.flags[c], 0, frame.flags, from, n);
+        }
+        return frame;
+    }
+
+    /**
+     * A frame rebuilt from stored columns, e.g. when replaying a recording. It has no live
+     * aircraft behind it: {@link #getAircraft(int)} returns null. The arrays are not copied.
+     */
+    public static FleetSnapshot of(long epoch, long timeMillis, int[] ids, double[] xs, double[] ys,
+                                   double[] vxs, double[] vys, byte[] flags) {
+        return new FleetSnapshot(epoch, timeMillis, new Aircraft[ids.length], ids, xs, ys, vxs, vys, flags);
+    }
+
+    /**
+     * {@code frame} followed by the entries of {@code remote}, e.g. aircraft flown by a
+     * neighbouring shard; the appended entries have no live aircraft.
+     */
+    public static FleetSnapshot concat(FleetSnapshot frame, FleetSnapshot remote) {
+        int n = frame.size();
+        int size = n + remote.size();
+        FleetSnapshot combined = new FleetSnapshot(frame.epoch, frame.timeMillis, size);
+        System.arraycopy(frame.aircraft, 0, combined.aircraft, 0, n);
+        copyColumns(frame, combined, 0);
+        copyColumns(remote, combined, n);
+        return combined;
+    }
+
+    private static void copyColumns(FleetSnapshot from, FleetSnapshot to, int at) {
+        int n = from.size();
+        System.arraycopy(from.ids, 0, to.ids, at, n);
+        System.arraycopy(from.xs, 0, to.xs, at, n);
+        System.arraycopy(from.ys, 0, to.ys, at, n);
+        System.arraycopy(from.vxs, 0, to.vxs, at, n);
+        System.arraycopy(from.vys, 0, to.vys, at, n);
+        System.arraycopy(from.flags, 0, to.flags, at, n);
+    }
+
+    /**
+     * The trajectory of entry {@code index} from its position in this frame, or null if the
+     * entry has no live aircraft (replayed or remote).
+     */
+    public Trajectory getTrajectory(int index) {
+        Aircraft source = aircraft[index];
+        if (source == null) {
+            return null;
+        }
+        return Trajectory.of(source.getRoute(), source.getSpeed(), xs[index], ys[index], flags[index], timeMillis,
+                source.getCruiseX(), source.getCruiseAltitude());
+    }
+
+    /**
+     * This frame moved forward to {@code timeMillis}: airborne entries with a live aircraft
+     * are placed on their trajectories, all others keep their position. Lets a display draw
+     * smooth motion between engine ticks.
+     */
+    public FleetSnapshot projectTo(long timeMillis) {
+        int size = size();
+        FleetSnapshot projected = new FleetSnapshot(epoch, timeMillis, size);
+        System.arraycopy(aircraft, 0, projected.aircraft, 0, size);
+        copyColumns(this, projected, 0);
+        if (timeMillis <= this.timeMillis) {
+            return projected;
+        }
+        for (int i = 0; i < size; i++) {
+            if (aircraft[i] == null || !isAirborne(i)) {
+                continue;
+            }
+            Trajectory trajectory = getTrajectory(i);
+            projected.xs[i] = trajectory.getX(timeMillis);
+            projected.ys[i] = trajectory.getY(timeMillis);
+            projected.vxs[i] = trajectory.getVelocityX(timeMillis);
+            projected.vys[i] = trajectory.getVelocityY(timeMillis);
+        }
+        return projected;
+    }
+
+    /** Status bits of entry {@code index}, as stored by {@link #of}. */
+    public byte getFlags(int index) { return flags[index]; }
+
+    void set(int index, Aircraft source, double x, double y, double vx, double vy, byte flags) {
+        aircraft[index] = source;
+        ids[index] = source.getAircraftId();
+        xs[index] = x;
+        ys[index] = y;
+        vxs[index] = vx;
+        vys[index] = vy;
+        this.flags[index] = flags;
+    }
+
+    public long getEpoch() { return epoch; }
+    public long getTimeMillis() { return timeMillis; }
+    public int size() { return aircraft.length; }
+
+    public Aircraft getAircraft(int index) { return aircraft[index]; }
+    public int getAircraftId(int index) { return ids[index]; }
+    public double getX(int index) { return xs[index]; }
+    public double getY(int index) { return ys[index]; }
+    public double getVelocityX(int index) { return vxs[index]; }
+    public double getVelocityY(int index) { return vys[index]; }
+    public boolean hasTakenOff(int index) { return (flags[index] & TOOK_OFF) != 0; }
+    public boolean isLanded(int index) { return (flags[index] & LANDED) != 0; }
+    public boolean isAirborne(int index) { return hasTakenOff(index) && !isLanded(index); }
+    public boolean isInConflictAvoidance(int index) { return (flags[index] & CONFLICT_AVOIDANCE) != 0; }
+}
@@ -0,0 +1,310 @@
+package aircraft;
+
+import airport.Airport;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import events.EventLog;
+import events.EventType;
+import simulation.SimulationClock;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Structure-of-arrays store for the hot per-aircraft state: id, position, velocity, speed,
+ * cruise profile and status flags live in parallel primitive columns indexed by a dense
+ * slot, and {@link Aircraft} objects are views onto one slot. Bulk passes such as
+ * {@link #advance(int, int, double, long)} and {@link FleetSnapshot#capture(FleetState, long, long)}
+ * then walk plain arrays instead of chasing one object per aircraft.
+ * <p>
+ * Columns are split into fixed-size chunks that never move once allocated, so the store can
+ * grow while aircraft are flying without losing their writes.
+ */
+public class FleetState {
+
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Same bits as FleetSnapshot's flags, so frames can copy the column as is.
+    static final byte TOOK_OFF = 1;
+    static final byte LANDED = 2;
+    static final byte CONFLICT_AVOIDANCE = 4;
+    static final byte HANDED_OFF = 8; // flown on by another shard; also LANDED, so no longer airborne here
+
+    int[][] ids = new int[0][];
+    int[][] speeds = new int[0][];
+    double[][] xs = new double[0][];
+    double[][] ys = new double[0][];
+    double[][] vxs = new double[0][];
+    double[][] vys = new double[0][];
+    double[][] fromXs = new double[0][];
+    double[][] toXs = new double[0][];
+    double[][] cruiseAltitudes = new double[0][];
+    double[][] cruiseXs = new double[0][];
+    byte[][] flags = new byte[0][];
+    Aircraft[][] views = new Aircraft[0][];
+
+    private volatile int size;
+    private int firstRegrounded = Integer.MAX_VALUE; // lowest slot put back on the ground for a new leg
+
+    // Column bytes of one aircraft in a checkpoint, plus the smallest record its view writes.
+    private static final int CHECKPOINT_BYTES_PER_AIRCRAFT = 4 + 4 + 8 * 8 + 1 + 1;
+
+    /** Creates an aircraft in the next free slot of this store. */
+    public Aircraft add(int id, int speed, SimulationClock clock) {
+        return new Aircraft(this, id, speed, clock);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Aircraft getAircraft(int slot) {
+        return views[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    /** Live, read-only list of the aircraft in slot order. */
+    public List<Aircraft> aircraft() {
+        return new AircraftList();
+    }
+
+    synchronized int register(Aircraft view, int id, int speed) {
+        int slot = size;
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk == ids.length) {
+            grow();
+        }
+        int o = slot & CHUNK_MASK;
+        ids[chunk][o] = id;
+        speeds[chunk][o] = speed;
+        flags[chunk][o] = LANDED; // initially landed at origin airport
+        views[chunk][o] = view;
+        size = slot + 1;
+        return slot;
+    }
+
+    private void grow() {
+        int chunks = ids.length + 1;
+        ids = Arrays.copyOf(ids, chunks);
+        speeds = Arrays.copyOf(speeds, chunks);
+        xs = Arrays.copyOf(xs, chunks);
+        ys = Arrays.copyOf(ys, chunks);
+        vxs = Arrays.copyOf(vxs, chunks);
+        vys = Arrays.copyOf(vys, chunks);
+        fromXs = Arrays.copyOf(fromXs, chunks);
+        toXs = Arrays.copyOf(toXs, chunks);
+        cruiseAltitudes = Arrays.copyOf(cruiseAltitudes, chunks);
+        cruiseXs = Arrays.copyOf(cruiseXs, chunks);
+        flags = Arrays.copyOf(flags, chunks);
+        views = Arrays.copyOf(views, chunks);
+        int c = chunks - 1;
+        ids[c] = new int[CHUNK_SIZE];
+        speeds[c] = new int[CHUNK_SIZE];
+        xs[c] = new double[CHUNK_SIZE];
+        ys[c] = new double[CHUNK_SIZE];
+        vxs[c] = new double[CHUNK_SIZE];
+        vys[c] = new double[CHUNK_SIZE];
+        fromXs[c] = new double[CHUNK_SIZE];
+        toXs[c] = new double[CHUNK_SIZE];
+        cruiseAltitudes[c] = new double[CHUNK_SIZE];
+        cruiseXs[c] = new double[CHUNK_SIZE];
+        flags[c] = new byte[CHUNK_SIZE];
+        views[c] = new Aircraft[CHUNK_SIZE];
+    }
+
+    /**
+     * Advances every airborne aircraft in slots [from, to) by {@code seconds}. Aircraft flying
+     * their normal profile are stepped in place over the columns; the few avoiding a conflict
+     * follow their waypoints through {@link Aircraft#updatePosition(double)}.
+     * <p>
+     * Writes without the aircraft's lock: only for a single writer per slot (the tick engine
+     * and its workers on disjoint ranges) whose readers use published snapshots.
+     *
+     * @return number of aircraft that were airborne and moved
+     */
+    public int advance(int from, int to, double seconds, long nowMillis) {
+        EventLog log = EventLog.get();
+        boolean logPositions = log.isEnabled(EventType.POSITION);
+        int updated = 0;
+        int slot = from;
+        while (slot < to) {
+            int c = slot >>> CHUNK_BITS;
+            int start = slot & CHUNK_MASK;
+            int end = Math.min(CHUNK_SIZE, start + (to - slot));
+            int[] id = ids[c];
+            int[] speed = speeds[c];
+            double[] x = xs[c];
+            double[] y = ys[c];
+            double[] vx = vxs[c];
+            double[] vy = vys[c];
+            double[] x1 = fromXs[c];
+            double[] x2 = toXs[c];
+            double[] alt = cruiseAltitudes[c];
+            double[] mid = cruiseXs[c];
+            byte[] flag = flags[c];
+
+            for (int o = start; o < end; o++) {
+                int f = flag[o];
+                if ((f & (TOOK_OFF | LANDED)) != TOOK_OFF) {
+                    continue;
+                }
+                updated++;
+                if ((f & CONFLICT_AVOIDANCE) != 0) {
+                    views[c][o].updatePosition(seconds);
+                    continue;
+                }
+                double px = x[o];
+                double remaining = Math.abs(x2[o] - px);
+                if (remaining > 0) {
+                    px += Math.signum(x2[o] - px) * Math.min(remaining, speed[o] * seconds);
+                }
+                double py = profileAltitude(px, x1[o], x2[o], mid[o], alt[o]);
+                x[o] = px;
+                y[o] = py;
+                if (Math.abs(px - x2[o]) < 1e-3 && Math.abs(py) < 1e-3) {
+                    flag[o] = (byte) (f | LANDED);
+                    vx[o] = 0;
+                    vy[o] = 0;
+                    views[c][o].arrive(nowMillis); // may put it back on the ground for its next leg
+                } else {
+                    vx[o] = Math.signum(x2[o] - px) * speed[o];
+                    vy[o] = profileSlope(px, x1[o], x2[o], mid[o], alt[o]) * vx[o];
+                }
+                if (logPositions) {
+                    log.publish(EventType.POSITION, id[o], 0, 0, px, py, nowMillis);
+                }
+            }
+            slot += end - start;
+        }
+        return updated;
+    }
+
+    // Notes that a slot is on the ground again, ahead of whatever its scheduler skipped so far.
+    synchronized void regrounded(int slot) {
+        firstRegrounded = Math.min(firstRegrounded, slot);
+    }
+
+    /**
+     * The lowest slot put back on the ground for a new leg since the last call, or
+     * {@link Integer#MAX_VALUE} if none was.
+     */
+    public synchronized int takeRegrounded() {
+        int slot = firstRegrounded;
+        firstRegrounded = Integer.MAX_VALUE;
+        return slot;
+    }
+
+    /**
+     * Writes every aircraft: the columns chunk by chunk, each copied in bulk, then what the
+     * views hold (route and waypoints, reservations, itinerary). Only between ticks, with no
+     * aircraft flying on its own thread.
+     */
+    public void writeTo(CheckpointWriter out) throws IOException {
+        int size = this.size;
+        out.putInt(size);
+        for (int c = 0; c * CHUNK_SIZE < size; c++) {
+            int n = Math.min(CHUNK_SIZE, size - c * CHUNK_SIZE);
+            out.putInts(ids[c], 0, n).putInts(speeds[c], 0, n);
+            out.putDoubles(xs[c], 0, n).putDoubles(ys[c], 0, n);
+            out.putDoubles(vxs[c], 0, n).putDoubles(vys[c], 0, n);
+            out.putDoubles(fromXs[c], 0, n).putDoubles(toXs[c], 0, n);
+            out.putDoubles(cruiseAltitudes[c], 0, n).putDoubles(cruiseXs[c], 0, n);
+            out.putBytes(flags[c], 0, n);
+        }
+        for (int slot = 0; slot < size; slot++) {
+            getAircraft(slot).writeTo(out);
+        }
+    }
+
+    /**
+     * Fills this empty store with the aircraft written by {@link #writeTo}, in the same
+     * slots, their routes leading to and from {@code airports}.
+     */
+    public void readFrom(CheckpointReader in, Map<Integer, Airport> airports, SimulationClock clock) {
+        if (size != 0) {
+            throw new IllegalStateException("Can only restore into an empty fleet, this one has " + size);
+        }
+        int count = in.getCount(CHECKPOINT_BYTES_PER_AIRCRAFT);
+        int[] chunkIds = new int[CHUNK_SIZE];
+        int[] chunkSpeeds = new int[CHUNK_SIZE];
+        for (int c = 0; c * CHUNK_SIZE < count; c++) {
+            int n = Math.min(CHUNK_SIZE, count - c * CHUNK_SIZE);
+            in.getInts(chunkIds, 0, n);
+            in.getInts(chunkSpeeds, 0, n);
+            for (int o = 0; o < n; o++) {
+                new Aircraft(this, chunkIds[o], chunkSpeeds[o], clock);
+            }
+            in.getDoubles(xs[c], 0, n);
+            in.getDoubles(ys[c], 0, n);
+            in.getDoubles(vxs[c], 0, n);
+            in.getDoubles(vys[c], 0, n);
+            in.getDoubles(fromXs[c], 0, n);
+            in.getDoubles(toXs[c], 0, n);
+            in.getDoubles(cruiseAltitudes[c], 0, n);
+            in.getDoubles(cruiseXs[c], 0, n);
+            in.getBytes(flags[c], 0, n);
+        }
+        for (int slot = 0; slot < count; slot++) {
+            getAircraft(slot).readFrom(in, airports);
+        }
+    }
+
+    /** Whether any aircraft has taken off and not landed yet; a scan of the flags column. */
+    public boolean hasAirborne() {
+        int size = this.size;
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            byte[] flag = flags[from >>> CHUNK_BITS];
+            int n = Math.min(CHUNK_SIZE, size - from);
+            for (int o = 0; o < n; o++) {
+                if ((flag[o] & (TOOK_OFF | LANDED)) == TOOK_OFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Altitude on the climb/cruise/descent profile between x1 and x2 at horizontal position x.
+     */
+    static double profileAltitude(double x, double x1, double x2, double cruiseX, double cruiseAltitude) {
+        double y;
+        if (Math.abs(x - cruiseX) < 1e-3) {
+            y = cruiseAltitude;
+        } else if ((x1 < x2 && x < cruiseX) || (x1 > x2 && x > cruiseX)) {
+            double slope = cruiseAltitude / (cruiseX - x1);
+            y = slope * (x - x1);
+        } else {
+            double slope = cruiseAltitude / (x2 - cruiseX);
+            y = cruiseAltitude - slope * (x - cruiseX);
+        }
+        return y < 0 ? 0 : y;
+    }
+
+    /** Change of profile altitude per unit of x at horizontal position x. */
+    static double profileSlope(double x, double x1, double x2, double cruiseX, double cruiseAltitude) {
+        boolean climbing = (x1 < x2 && x < cruiseX) || (x1 > x2 && x > cruiseX);
+        double run = climbing ? cruiseX - x1 : x2 - cruiseX;
+        return run == 0 ? 0 : (climbing ? cruiseAltitude : -cruiseAltitude) / run;
+    }
+
+    private class AircraftList extends AbstractList<Aircraft> implements RandomAccess {
+        @Override
+        public Aircraft get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("slot " + index + ", size " + size);
+            }
+            return getAircraft(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package aircraft;
+
+import airport.Airport;
+
+/**
+ * Legs an aircraft still has to fly after its current route, in order. Each leg departs from
+ * where the previous one landed and holds its destination, the earliest departure time the
+ * schedule allows and the turnaround: the minimum time on the ground between landing at the
+ * leg's origin and taking off again. Legs are kept in a ring buffer of primitive arrays like
+ * {@link Route}'s waypoints, so a long schedule fed in as it goes never allocates once the
+ * buffer is big enough. The arrays grow together and their length stays a power of two, as
+ * {@link RingIndex} needs to wrap positions.
+ * <p>
+ * Not thread-safe: legs are added and taken by whoever drives the aircraft (the tick engine,
+ * or before its thread starts).
+ */
+public final class Itinerary {
+
+    private Airport[] destinations = new Airport[4];
+    private long[] departures = new long[4];
+    private long[] turnarounds = new long[4];
+    private final RingIndex legs = new RingIndex(4);
+
+    public boolean isEmpty() {
+        return legs.size() == 0;
+    }
+
+    public int size() {
+        return legs.size();
+    }
+
+    /** Destination of the {@code index}-th leg still ahead, 0 being the next one. */
+    public Airport getDestination(int index) {
+        return destinations[legs.position(index)];
+    }
+
+    public long getDepartureMillis(int index) {
+        return departures[legs.position(index)];
+    }
+
+    public long getTurnaroundMillis(int index) {
+        return turnarounds[legs.position(index)];
+    }
+
+    void add(Airport destination, long departureMillis, long turnaroundMillis) {
+        if (legs.isFull()) {
+            grow();
+        }
+        int tail = legs.add();
+        destinations[tail] = destination;
+        departures[tail] = departureMillis;
+        turnarounds[tail] = turnaroundMillis;
+    }
+
+    // Drops the next leg once the aircraft has started it.
+    void remove() {
+        int removed = legs.remove();
+        if (removed >= 0) {
+            destinations[removed] = null;
+        }
+    }
+
+    private void grow() {
+        int capacity = destinations.length * 2;
+        Airport[] airports = new Airport[capacity];
+        long[] times = new long[capacity];
+        long[] grounds = new long[capacity];
+        for (int i = 0; i < legs.size(); i++) {
+            int from = legs.position(i);
+            airports[i] = destinations[from];
+            times[i] = departures[from];
+            grounds[i] = turnarounds[from];
+        }
+        destinations = airports;
+        departures = times;
+        turnarounds = grounds;
+        legs.grown();
+    }
+}
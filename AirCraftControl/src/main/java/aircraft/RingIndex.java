@@ -0,0 +1,65 @@
+package aircraft;
+
+/**
+ * Head, length and index arithmetic of a ring buffer whose elements live in parallel arrays
+ * owned by the caller, such as {@link Route}'s waypoints and {@link Itinerary}'s legs.
+ * Capacity is a power of two, so positions wrap with a mask; an owner that grows its arrays
+ * copies the elements in order to the front of arrays twice as long and calls
+ * {@link #grown()}.
+ */
+final class RingIndex {
+
+    private int head;
+    private int count;
+    private int mask;
+
+    RingIndex(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count == mask + 1;
+    }
+
+    /** Array position of the {@code index}-th element, 0 being the head. */
+    int position(int index) {
+        return (head + index) & mask;
+    }
+
+    /** Appends an element, which the caller then stores at the returned position. */
+    int add() {
+        if (isFull()) {
+            throw new IllegalStateException("ring is full");
+        }
+        return position(count++);
+    }
+
+    /** Drops the head element and returns the position it was at, or -1 if there was none. */
+    int remove() {
+        if (count == 0) {
+            return -1;
+        }
+        int removed = head;
+        head = (head + 1) & mask;
+        count--;
+        return removed;
+    }
+
+    void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    /** The arrays now have twice the capacity and hold the elements from position 0. */
+    void grown() {
+        mask = mask * 2 + 1;
+        head = 0;
+    }
+}
@@ -1,40 +1,79 @@
 package aircraft;
 
 import airport.Airport;
-import java.util.LinkedList;
-import java.util.Queue;
 
-public class Route {
+/**
+ * Route from one airport to another with a queue of temporary waypoints (e.g. conflict
+ * avoidance) flown before the destination. Waypoints are kept in a ring buffer (see
+ * {@link RingIndex}) of primitive x/y arrays, so adding, reaching and reading them never
+ * allocates once the buffer is big enough. An aircraft flying an {@link Itinerary} keeps one
+ * route and resets it for every leg.
+ */
+public final class Route {
     private Airport fromAirport;
     private Airport toAirport;
-    private Queue<double[]> waypoints = new LinkedList<>(); // waypoint queue
-    private double[] currentTarget; // current destination (waypoint or final)
+    private double destinationX;
+    private double destinationY;
+
+    private double[] waypointXs = new double[4];
+    private double[] waypointYs = new double[4];
+    private final RingIndex waypoints = new RingIndex(4);
 
     public Route(Airport fromAirport, Airport toAirport) {
+        reset(fromAirport, toAirport);
+    }
+
+    /** Points the route at a new leg, dropping its waypoints but keeping their buffers. */
+    public void reset(Airport fromAirport, Airport toAirport) {
         this.fromAirport = fromAirport;
         this.toAirport = toAirport;
-        this.currentTarget = new double[]{toAirport.getX(), toAirport.getY()};
+        this.destinationX = toAirport.getX();
+        this.destinationY = toAirport.getY();
+        clearWaypoints();
     }
 
-    public Queue<double[]> getWaypoints() {
-        return waypoints;
+    public boolean hasWaypoints() {
+        return waypoints.size() > 0;
     }
 
-    public double[] getCurrentTarget() {
-        if (!waypoints.isEmpty()) {
-            return waypoints.peek();
-        }
-        return currentTarget;
+    public int getWaypointCount() {
+        return waypoints.size();
+    }
+
+    /** X of the {@code index}-th waypoint still ahead, 0 being the next one. */
+    public double getWaypointX(int index) {
+        return waypointXs[waypoints.position(index)];
+    }
+
+    public double getWaypointY(int index) {
+        return waypointYs[waypoints.position(index)];
+    }
+
+    /** X of the current target: the next waypoint, or the destination when there is none. */
+    public double getTargetX() {
+        return waypoints.size() > 0 ? waypointXs[waypoints.position(0)] : destinationX;
+    }
+
+    /** Y of the current target: the next waypoint, or the destination when there is none. */
+    public double getTargetY() {
+        return waypoints.size() > 0 ? waypointYs[waypoints.position(0)] : destinationY;
     }
 
     public void addWaypoint(double x, double y) {
-        waypoints.add(new double[]{x, y});
+        if (waypoints.isFull()) {
+            grow();
+        }
+        int tail = waypoints.add();
+        waypointXs[tail] = x;
+        waypointYs[tail] = y;
     }
 
     public void reachWaypoint() {
-        if (!waypoints.isEmpty()) {
-            waypoints.poll(); // move to the next waypoint or final destination
-        }
+        waypoints.remove(); // move to the next waypoint or final destination
+    }
+
+    public void clearWaypoints() {
+        waypoints.clear();
     }
 
     public Airport getFromAirport() {
@@ -44,4 +83,18 @@ public class Route {
     public Airport getToAirport() {
         return toAirport;
     }
+
+    private void grow() {
+        int capacity = waypointXs.length * 2;
+        double[] xs = new double[capacity];
+        double[] ys = new double[capacity];
+        for (int i = 0; i < waypoints.size(); i++) {
+            int from = waypoints.position(i);
+            xs[i] = waypointXs[from];
+            ys[i] = waypointYs[from];
+        }
+        waypointXs = xs;
+        waypointYs = ys;
+        waypoints.grown();
+    }
 }
@@ -0,0 +1,209 @@
+package aircraft;
+
+import java.util.Arrays;
+
+/**
+ * Where an aircraft will be at any time from a known position on, in closed form. The flight
+ * ahead is cut into straight legs flown at constant speed: one level leg per avoidance
+ * waypoint, then the climb/cruise/descent profile to the destination, split at the cruise
+ * point. Any time is then answered with a binary search over the legs and one interpolation,
+ * with no stepping in between.
+ * <p>
+ * A trajectory is fixed once built: it describes the route as it was then. Build a new one
+ * after a reroute or revert. The stepped simulation lands, and reaches waypoints, on the first
+ * tick at or after the times given here; since it loses the rest of the tick at a waypoint,
+ * rebuild after one is reached to stay in step with it.
+ */
+public final class Trajectory {
+
+    private final long startMillis;
+    private final double[] legStarts;  // millis, relative to startMillis
+    private final double[] startXs;
+    private final double[] startYs;
+    private final double[] endXs;
+    private final double[] endYs;
+    private final double[] durations; // millis
+    private final int legCount;
+    private final boolean airborne;
+    private final boolean landed;
+
+    private Trajectory(long startMillis, double[] legStarts, double[] startXs, double[] startYs, double[] endXs,
+                       double[] endYs, double[] durations, int legCount, boolean airborne, boolean landed) {
+        this.startMillis = startMillis;
+        this.legStarts = legStarts;
+        this.startXs = startXs;
+        this.startYs = startYs;
+        this.endXs = endXs;
+        this.endYs = endYs;
+        this.durations = durations;
+        this.legCount = legCount;
+        this.airborne = airborne;
+        this.landed = landed;
+    }
+
+    /**
+     * The trajectory of an aircraft that was at (x, y) with the given status flags at
+     * {@code timeMillis}, flying {@code route} with the given cruise profile.
+     */
+    static Trajectory of(Route route, int speed, double x, double y, byte flags, long timeMillis,
+                         double cruiseX, double cruiseAltitude) {
+        boolean tookOff = (flags & FleetState.TOOK_OFF) != 0;
+        boolean landed = (flags & FleetState.LANDED) != 0;
+        Builder legs = new Builder(speed);
+        if (route == null || !tookOff || landed || speed <= 0) {
+            legs.add(x, y, x, y);
+            return legs.build(timeMillis, false, tookOff && landed);
+        }
+        // Level legs to the waypoints, at each waypoint's altitude as the stepped model flies them.
+        int waypoints = route.getWaypointCount();
+        for (int i = 0; i < waypoints; i++) {
+            double wx = route.getWaypointX(i);
+            double wy = route.getWaypointY(i);
+            legs.add(x, wy, wx, wy);
+            x = wx;
+        }
+
+        // The profile is linear in x on either side of the cruise point, so each side is one leg.
+        double x1 = route.getFromAirport().getX();
+        double x2 = route.getToAirport().getX();
+        double startY = FleetState.profileAltitude(x, x1, x2, cruiseX, cruiseAltitude);
+        if ((x < cruiseX && cruiseX < x2) || (x > cruiseX && cruiseX > x2)) {
+            legs.add(x, startY, cruiseX, cruiseAltitude);
+            x = cruiseX;
+            startY = cruiseAltitude;
+        }
+        legs.add(x, startY, x2, route.getToAirport().getY());
+        return legs.build(timeMillis, true, false);
+    }
+
+    /** Time the position was known at; the trajectory starts there. */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Time of arrival at the destination: the end of the last leg. For an aircraft already
+     * landed, the start time; for one that has not taken off yet, -1.
+     */
+    public long getArrivalMillis() {
+        if (airborne) {
+            return startMillis + (long) Math.ceil(legStarts[legCount - 1] + durations[legCount - 1]);
+        }
+        return landed ? startMillis : -1;
+    }
+
+    /** Whether the aircraft was in flight when the trajectory was built. */
+    public boolean isAirborne() {
+        return airborne;
+    }
+
+    public int getLegCount() {
+        return legCount;
+    }
+
+    public long getLegStartMillis(int leg) {
+        return startMillis + (long) legStarts[leg];
+    }
+
+    public double getLegEndX(int leg) {
+        return endXs[leg];
+    }
+
+    public double getLegEndY(int leg) {
+        return endYs[leg];
+    }
+
+    /** X at {@code timeMillis}; before the start the start position, after arrival the destination. */
+    public double getX(long timeMillis) {
+        int leg = legAt(timeMillis);
+        return startXs[leg] + (endXs[leg] - startXs[leg]) * fraction(leg, timeMillis);
+    }
+
+    public double getY(long timeMillis) {
+        int leg = legAt(timeMillis);
+        return startYs[leg] + (endYs[leg] - startYs[leg]) * fraction(leg, timeMillis);
+    }
+
+    /** Horizontal velocity at {@code timeMillis}, 0 after arrival. */
+    public double getVelocityX(long timeMillis) {
+        int leg = legAt(timeMillis);
+        return flying(leg, timeMillis) ? (endXs[leg] - startXs[leg]) * 1000 / durations[leg] : 0;
+    }
+
+    public double getVelocityY(long timeMillis) {
+        int leg = legAt(timeMillis);
+        return flying(leg, timeMillis) ? (endYs[leg] - startYs[leg]) * 1000 / durations[leg] : 0;
+    }
+
+    private boolean flying(int leg, long timeMillis) {
+        double t = timeMillis - startMillis;
+        return airborne && durations[leg] > 0 && t >= legStarts[leg] && t < legStarts[leg] + durations[leg];
+    }
+
+    // Last leg starting at or before the time; leg 0 for times before the start.
+    private int legAt(long timeMillis) {
+        double t = timeMillis - startMillis;
+        int low = 0;
+        int high = legCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (legStarts[mid] <= t) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private double fraction(int leg, long timeMillis) {
+        if (durations[leg] == 0) {
+            return 1;
+        }
+        double f = (timeMillis - startMillis - legStarts[leg]) / durations[leg];
+        return f < 0 ? 0 : Math.min(f, 1);
+    }
+
+    private static final class Builder {
+        private final int speed;
+        private double[] legStarts = new double[4];
+        private double[] startXs = new double[4];
+        private double[] startYs = new double[4];
+        private double[] endXs = new double[4];
+        private double[] endYs = new double[4];
+        private double[] durations = new double[4];
+        private int count;
+        private double elapsed;
+
+        Builder(int speed) {
+            this.speed = speed;
+        }
+
+        void add(double fromX, double fromY, double toX, double toY) {
+            if (count == legStarts.length) {
+                int capacity = count * 2;
+                legStarts = Arrays.copyOf(legStarts, capacity);
+                startXs = Arrays.copyOf(startXs, capacity);
+                startYs = Arrays.copyOf(startYs, capacity);
+                endXs = Arrays.copyOf(endXs, capacity);
+                endYs = Arrays.copyOf(endYs, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+            }
+            // Speed is horizontal: a leg takes as long as its x distance.
+            double duration = speed > 0 ? Math.abs(toX - fromX) * 1000 / speed : 0;
+            legStarts[count] = elapsed;
+            startXs[count] = fromX;
+            startYs[count] = fromY;
+            endXs[count] = toX;
+            endYs[count] = toY;
+            durations[count] = duration;
+            elapsed += duration;
+            count++;
+        }
+
+        Trajectory build(long startMillis, boolean airborne, boolean landed) {
+            return new Trajectory(startMillis, legStarts, startXs, startYs, endXs, endYs, durations, count,
+                    airborne, landed);
+        }
+    }
+}
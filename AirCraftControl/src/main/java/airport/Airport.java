@@ -1,5 +1,7 @@
 package airport;
 
+import simulation.SimulationClock;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +15,10 @@ public class Airport {
     private final AirportControlManager airportControlManager;
 
     public Airport(int Id, double x, int nbOfSlots, int timeBetweenOps) {
+        this(Id, x, nbOfSlots, timeBetweenOps, SimulationClock.realTime());
+    }
+
+    public Airport(int Id, double x, int nbOfSlots, int timeBetweenOps, SimulationClock clock) {
         this.Id = Id;
         this.x = x;
         // y mereu 0 pentru airports
@@ -22,7 +28,7 @@ public class Airport {
             slots.add(slot);
         }
 
-        this.airportControlManager = new AirportControlManager(this, timeBetweenOps);
+        this.airportControlManager = new AirportControlManager(this, timeBetweenOps, clock);
     }
 
     public int getId() {
@@ -1,82 +1,523 @@
 package airport;
 
 import aircraft.Aircraft;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import events.EventLog;
+import events.EventType;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.SlotWaitEvent;
+import simulation.SimulationClock;
 
-public class AirportControlManager {
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Grants takeoffs and landings at one airport, keeping every operation {@code timeBetween}
+ * seconds from the others.
+ * <p>
+ * Flights normally book ahead: {@link #reserveTakeoff} and {@link #reserveLanding} return
+ * the first free time in the airport's {@link RunwayCalendar}, and the aircraft simply waits
+ * until then and {@link #claim}s it. Requests for permission are still served, strictly in
+ * arrival order, in the gaps the bookings leave: a request waits in a FIFO queue until it is
+ * at the head, a slot is free and the runway is free now. Only the head of the queue is ever
+ * woken, either by a released slot or by the separation time running out.
+ */
+public final class AirportControlManager {
 
     private final Airport airport;
     private final int timeBetween;
+    private final SimulationClock clock;
     private long lastOperationTime = 0;
 
+    private final SlotAllocator slots;
+    private final RunwayCalendar calendar;
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+    private final WaitStats waitStats = new WaitStats();
+    private long takeoffs;
+    private final LongAdder landings = new LongAdder();
+
+    // A lock instead of synchronized/wait(): waiting virtual threads then unmount from their carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+
     public AirportControlManager(Airport airport, int timeBetween) {
+        this(airport, timeBetween, SimulationClock.realTime());
+    }
+
+    public AirportControlManager(Airport airport, int timeBetween, SimulationClock clock) {
         this.airport = airport;
         this.timeBetween = timeBetween;
+        this.clock = clock;
+        this.slots = new SlotAllocator(airport.getSlots());
+        this.calendar = new RunwayCalendar(timeBetween);
+        Metrics.get().gauge("airport." + airport.getId() + ".slots.occupied", this::getOccupiedSlots);
+        Metrics.get().gauge("airport." + airport.getId() + ".queue", this::getQueueLength);
+    }
+
+    public Slot requestTakeoffPermission(Aircraft aircraft) {
+        return awaitPermission(aircraft, Operation.TAKEOFF);
     }
 
-    public synchronized Slot requestTakeoffPermission(Aircraft aircraft) {
-        long currentTime = System.currentTimeMillis() / 1000;
-        while ((currentTime - lastOperationTime) < timeBetween || getAvailableSlot() == null) {
-            long waitTime = timeBetween - (currentTime - lastOperationTime);
-            if (waitTime <= 0) waitTime = 1;
-            try {
-                wait(waitTime * 1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.out.println("Aircraft " + aircraft.getAircraftId() + " interrupted while waiting for takeoff.");
+    public Slot requestLandingPermission(Aircraft aircraft) {
+        return awaitPermission(aircraft, Operation.LANDING);
+    }
+
+    /**
+     * Non-blocking variant of {@link #requestTakeoffPermission(Aircraft)} for callers that
+     * cannot wait. Returns null if takeoff is not possible right now, including when other
+     * aircraft are already queued.
+     */
+    public Slot tryTakeoffPermission(Aircraft aircraft) {
+        lock.lock();
+        try {
+            if (!queue.isEmpty() || !canOperate()) {
                 return null;
             }
-            currentTime = System.currentTimeMillis() / 1000;
-        }
-        Slot availableSlot = getAvailableSlot();
-        if (availableSlot != null) {
-            availableSlot.setAvailable(false);
-            lastOperationTime = currentTime;
-            System.out.println("Takeoff GRANTED to Aircraft " + aircraft.getAircraftId() +
-                    " from slot " + availableSlot.getId() +
-                    " at Airport " + airport.getId());
-            return availableSlot;
-        }
-        return null;
-    }
-
-    public synchronized Slot requestLandingPermission(Aircraft aircraft) {
-        long currentTime = System.currentTimeMillis() / 1000;
-        while ((currentTime - lastOperationTime) < timeBetween || getAvailableSlot() == null) {
-            long waitTime = timeBetween - (currentTime - lastOperationTime);
-            if (waitTime <= 0) waitTime = 1;
-            try {
-                wait(waitTime * 1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.out.println("Aircraft " + aircraft.getAircraftId() + " interrupted while waiting for landing.");
+            return grant(new Request(aircraft, Operation.TAKEOFF, clock.currentTimeMillis(), null));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books the first free takeoff time at or after {@code fromMillis}. The aircraft then
+     * waits for it without holding anything and calls {@link #claim} once it has come.
+     */
+    public Reservation reserveTakeoff(Aircraft aircraft, long fromMillis) {
+        return reserve(aircraft, Operation.TAKEOFF, fromMillis);
+    }
+
+    /** Books the first free landing time at or after {@code etaMillis}. */
+    public Reservation reserveLanding(Aircraft aircraft, long etaMillis) {
+        return reserve(aircraft, Operation.LANDING, etaMillis);
+    }
+
+    public void cancel(Reservation reservation) {
+        lock.lock();
+        try {
+            calendar.cancel(reservation.getTimeMillis() / 1000, reservation.getAircraftId());
+        } finally {
+            lock.unlock();
+        }
+        dispatch(); // the freed time may be due now
+    }
+
+    /**
+     * First time at or after {@code fromMillis} at which an operation could be booked, in
+     * whole seconds like the bookings.
+     */
+    public long getFirstFreeTimeMillis(long fromMillis) {
+        lock.lock();
+        try {
+            calendar.expire(currentTime());
+            return calendar.firstFree(toSeconds(fromMillis)) * 1000;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes off on a reserved time that has come: acquires a slot and records the grant, with
+     * the wait measured from when the booking was made. Returns null if every slot is held by
+     * someone else, in which case the booking is given up, or if a landing off its booking
+     * took the runway too close to it (see {@link #recordLanding}). Either way the aircraft
+     * has to book again.
+     */
+    public Slot claim(Aircraft aircraft, Reservation takeoff) {
+        if (takeoff.isLanding() || takeoff.getAirport() != this) {
+            throw new IllegalArgumentException(takeoff + " is not a takeoff from Airport " + airport.getId());
+        }
+        if (clock.currentTimeMillis() < takeoff.getTimeMillis()) {
+            throw new IllegalStateException(takeoff + " is not due yet");
+        }
+        lock.lock();
+        try {
+            long time = takeoff.getTimeMillis() / 1000;
+            long now = currentTime();
+            calendar.expire(now);
+            if (calendar.wasGivenUp(time, takeoff.getAircraftId(), now)) {
                 return null;
             }
-            currentTime = System.currentTimeMillis() / 1000;
+            if (!slots.hasFreeSlot()) {
+                calendar.cancel(time, takeoff.getAircraftId());
+                return null;
+            }
+            Request request = new Request(aircraft, Operation.TAKEOFF, takeoff.getRequestedAt(), null);
+            request.booked = true;
+            return grant(request);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a takeoff request without blocking. {@code onGranted} runs once the request
+     * reaches the head of the queue and can be served, on the thread that served it: the one
+     * releasing a slot or calling {@link #dispatch()}.
+     */
+    public void requestTakeoffPermission(Aircraft aircraft, Consumer<Slot> onGranted) {
+        enqueue(aircraft, Operation.TAKEOFF, onGranted);
+    }
+
+    public void requestLandingPermission(Aircraft aircraft, Consumer<Slot> onGranted) {
+        enqueue(aircraft, Operation.LANDING, onGranted);
+    }
+
+    public void releaseSlot(Slot slot) {
+        List<Request> granted;
+        lock.lock();
+        try {
+            slots.release(slot);
+            EventLog.get().publish(EventType.SLOT_RELEASED, -1, slot.getId(), airport.getId(),
+                    airport.getX(), airport.getY(), clock.currentTimeMillis());
+            granted = serveQueue();
+        } finally {
+            lock.unlock();
+        }
+        runCallbacks(granted);
+    }
+
+    /**
+     * Serves queued callback requests whose separation time has run out. Blocking waiters
+     * time themselves; callers of the callback API (e.g. the tick engine) call this
+     * periodically.
+     */
+    public void dispatch() {
+        List<Request> granted;
+        lock.lock();
+        try {
+            granted = serveQueue();
+        } finally {
+            lock.unlock();
         }
-        Slot availableSlot = getAvailableSlot();
-        if (availableSlot != null) {
-            availableSlot.setAvailable(false);
-            lastOperationTime = currentTime;
-            System.out.println("Landing GRANTED to Aircraft " + aircraft.getAircraftId() +
-                    " on slot " + availableSlot.getId() +
-                    " at Airport " + airport.getId());
-            return availableSlot;
+        runCallbacks(granted);
+    }
+
+    /**
+     * Simulated time, in milliseconds, from which the next takeoff or landing may be granted
+     * to a request for permission.
+     */
+    public long getNextOperationTimeMillis() {
+        return getFirstFreeTimeMillis(clock.currentTimeMillis());
+    }
+
+    /** Number of booked operations not yet in the past. */
+    public int getReservationCount() {
+        lock.lock();
+        try {
+            calendar.expire(currentTime());
+            return calendar.size();
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
-    public synchronized void releaseSlot(Slot slot) {
-        slot.setAvailable(true);
-        System.out.println("Slot " + slot.getId() + " is now available again at Airport " + airport.getId());
-        notifyAll(); // notify waiting threads
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private Slot getAvailableSlot() {
-        for (Slot slot : airport.getSlots()) {
-            if (slot.isAvailable()) {
-                return slot;
+    public int getOccupiedSlots() {
+        lock.lock();
+        try {
+            return airport.getSlots().size() - slots.freeSlots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public WaitStats getWaitStats() {
+        return waitStats;
+    }
+
+    /** Seconds kept between two operations. */
+    public int getTimeBetween() {
+        return timeBetween;
+    }
+
+    /**
+     * Writes the runway state: time of the last operation, which slots are in use and the
+     * bookings. Requests waiting for permission are not part of it; a checkpoint is taken
+     * between engine ticks, when none are. Counters and wait statistics start again from
+     * zero in a restored run, like every other metric.
+     */
+    public void writeTo(CheckpointWriter out) throws IOException {
+        lock.lock();
+        try {
+            if (!queue.isEmpty()) {
+                throw new IllegalStateException("Airport " + airport.getId() + " has " + queue.size()
+                        + " requests waiting for permission");
+            }
+            out.putLong(lastOperationTime);
+            List<Slot> all = airport.getSlots();
+            out.putInt(all.size());
+            for (Slot slot : all) {
+                out.putByte((byte) (slot.isAvailable() ? 1 : 0));
+            }
+            calendar.writeTo(out);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Restores the runway state written by {@link #writeTo} into this fresh airport. */
+    public void readFrom(CheckpointReader in) {
+        lock.lock();
+        try {
+            lastOperationTime = in.getLong();
+            List<Slot> all = airport.getSlots();
+            int count = in.getInt();
+            if (count != all.size()) {
+                throw new IllegalArgumentException("Airport " + airport.getId() + " has " + all.size()
+                        + " slots, the checkpoint " + count);
+            }
+            for (Slot slot : all) {
+                slot.setAvailable(in.getByte() != 0);
             }
+            slots.reset();
+            calendar.readFrom(in);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A reservation of this airport as it was checkpointed. The booking itself comes back
+     * with the calendar ({@link #readFrom}); this only gives the aircraft its handle on it.
+     */
+    public Reservation restoreReservation(int aircraftId, boolean landing, long timeMillis, long requestedAt) {
+        return new Reservation(this, aircraftId, landing, timeMillis, requestedAt);
+    }
+
+    /**
+     * Called by an aircraft when it touches down at this airport. The runway is taken at the
+     * actual landing time, which replaces the aircraft's booking if it had one. An aircraft
+     * rerouted on the way lands off its booking, possibly too close to other bookings: those
+     * from then on are given up, so a takeoff booked there is refused by {@link #claim} and
+     * booked again after the landing.
+     */
+    public void recordLanding(Aircraft aircraft, Reservation landing) {
+        landings.increment();
+        lock.lock();
+        try {
+            if (landing != null) {
+                calendar.cancel(landing.getTimeMillis() / 1000, landing.getAircraftId());
+            }
+            lastOperationTime = currentTime();
+            calendar.expire(lastOperationTime);
+            calendar.bookHappened(lastOperationTime, aircraft.getAircraftId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTakeoffCount() {
+        lock.lock();
+        try {
+            return takeoffs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLandingCount() {
+        return landings.sum();
+    }
+
+    private Slot awaitPermission(Aircraft aircraft, Operation operation) {
+        lock.lock();
+        try {
+            Request request = new Request(aircraft, operation, clock.currentTimeMillis(), lock.newCondition());
+            queue.addLast(request);
+            while (request.slot == null) {
+                List<Request> granted = serveQueue();
+                if (!granted.isEmpty()) {
+                    // Callbacks of requests ahead of us must not run under the lock.
+                    lock.unlock();
+                    try {
+                        runCallbacks(granted);
+                    } finally {
+                        lock.lock();
+                    }
+                    continue;
+                }
+                if (request.slot != null) {
+                    break;
+                }
+                try {
+                    if (queue.peekFirst() == request) {
+                        // Only the head waits on time; anyone else waits to become the head.
+                        long waitMillis = Math.max(1, calendar.firstFree(currentTime()) * 1000 - clock.currentTimeMillis());
+                        request.turn.awaitNanos(clock.toWallNanos(waitMillis));
+                    } else {
+                        request.turn.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (request.slot == null) {
+                        queue.remove(request);
+                        signalHead();
+                        System.out.println("Aircraft " + aircraft.getAircraftId() + " interrupted while waiting for " + operation.label + ".");
+                        return null;
+                    }
+                }
+            }
+            return request.slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Aircraft aircraft, Operation operation, Consumer<Slot> onGranted) {
+        List<Request> granted;
+        lock.lock();
+        try {
+            queue.addLast(new Request(aircraft, operation, clock.currentTimeMillis(), null, onGranted));
+            granted = serveQueue();
+        } finally {
+            lock.unlock();
+        }
+        runCallbacks(granted);
+    }
+
+    /**
+     * Grants requests from the head of the queue while possible. Blocking waiters are
+     * signalled; callback requests are returned so their callbacks run outside the lock.
+     */
+    private List<Request> serveQueue() {
+        List<Request> callbacks = List.of();
+        while (!queue.isEmpty() && canOperate()) {
+            Request request = queue.pollFirst();
+            grant(request);
+            if (request.onGranted != null) {
+                if (callbacks.isEmpty()) {
+                    callbacks = new ArrayList<>();
+                }
+                callbacks.add(request);
+            } else {
+                request.turn.signal();
+            }
+        }
+        signalHead();
+        return callbacks;
+    }
+
+    private Slot grant(Request request) {
+        Slot slot = slots.acquire();
+        lastOperationTime = currentTime();
+        if (!request.booked) {
+            calendar.book(lastOperationTime, request.aircraft.getAircraftId());
+        }
+        request.slot = slot;
+        if (request.operation == Operation.TAKEOFF) {
+            takeoffs++;
+        }
+        long waited = clock.currentTimeMillis() - request.requestedAt;
+        waitStats.record(waited);
+        request.operation.waits.record(waited);
+        SlotWaitEvent event = new SlotWaitEvent();
+        if (event.shouldCommit()) {
+            event.airportId = airport.getId();
+            event.aircraftId = request.aircraft.getAircraftId();
+            event.operation = request.operation.label;
+            event.slot = slot.getId();
+            event.waitMillis = waited;
+            event.freeSlots = slots.freeSlots();
+            event.commit();
+        }
+        EventLog.get().publish(request.operation.event, request.aircraft.getAircraftId(), slot.getId(), airport.getId(),
+                airport.getX(), airport.getY(), clock.currentTimeMillis());
+        return slot;
+    }
+
+    // Wakes the head so it starts waiting for the separation time (it may be the newly promoted one).
+    private void signalHead() {
+        Request head = queue.peekFirst();
+        if (head != null && head.turn != null) {
+            head.turn.signal();
+        }
+    }
+
+    private void runCallbacks(List<Request> granted) {
+        for (Request request : granted) {
+            request.onGranted.accept(request.slot);
+        }
+    }
+
+    private Reservation reserve(Aircraft aircraft, Operation operation, long fromMillis) {
+        lock.lock();
+        try {
+            long now = currentTime();
+            calendar.expire(now);
+            long time = calendar.firstFree(Math.max(now, toSeconds(fromMillis)));
+            calendar.book(time, aircraft.getAircraftId());
+            return new Reservation(this, aircraft.getAircraftId(), operation == Operation.LANDING, time * 1000,
+                    clock.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canOperate() {
+        long now = currentTime();
+        calendar.expire(now);
+        return calendar.isFree(now) && slots.hasFreeSlot();
+    }
+
+    private long currentTime() {
+        return clock.currentTimeMillis() / 1000;
+    }
+
+    // Bookings are whole seconds; a time within a second books the next one.
+    private static long toSeconds(long millis) {
+        return Math.floorDiv(millis + 999, 1000);
+    }
+
+    private enum Operation {
+        TAKEOFF("takeoff", EventType.TAKEOFF_GRANTED),
+        LANDING("landing", EventType.LANDING_GRANTED);
+
+        private final String label;
+        private final EventType event;
+        private final Histogram waits; // all airports
+
+        Operation(String label, EventType event) {
+            this.label = label;
+            this.event = event;
+            this.waits = Metrics.get().histogram("airport." + label + ".wait.ms");
+        }
+    }
+
+    private static class Request {
+        private final Aircraft aircraft;
+        private final Operation operation;
+        private final long requestedAt;
+        private final Condition turn;           // blocking waiters
+        private final Consumer<Slot> onGranted; // callback requests
+        private boolean booked;                 // claims a reservation already in the calendar
+        private Slot slot;
+
+        Request(Aircraft aircraft, Operation operation, long requestedAt, Condition turn) {
+            this(aircraft, operation, requestedAt, turn, null);
+        }
+
+        Request(Aircraft aircraft, Operation operation, long requestedAt, Condition turn, Consumer<Slot> onGranted) {
+            this.aircraft = aircraft;
+            this.operation = operation;
+            this.requestedAt = requestedAt;
+            this.turn = turn;
+            this.onGranted = onGranted;
         }
-        return null;
     }
 }
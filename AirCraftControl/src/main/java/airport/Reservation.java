@@ -0,0 +1,51 @@
+package airport;
+
+/**
+ * A runway operation booked ahead at one airport: the aircraft may take off, or is expected to
+ * land, at {@link #getTimeMillis()}. No other operation is booked or granted within the
+ * airport's separation time of it. Only a landing off its own booking, by an aircraft rerouted
+ * on the way, can still come too close. The later bookings it crowds are then given up, and
+ * a takeoff booked on one of those is refused and has to book again.
+ */
+public final class Reservation {
+
+    private final AirportControlManager airport;
+    private final int aircraftId;
+    private final boolean landing;
+    private final long timeMillis;
+    private final long requestedAt;
+
+    Reservation(AirportControlManager airport, int aircraftId, boolean landing, long timeMillis, long requestedAt) {
+        this.airport = airport;
+        this.aircraftId = aircraftId;
+        this.landing = landing;
+        this.timeMillis = timeMillis;
+        this.requestedAt = requestedAt;
+    }
+
+    public AirportControlManager getAirport() {
+        return airport;
+    }
+
+    public int getAircraftId() {
+        return aircraftId;
+    }
+
+    public boolean isLanding() {
+        return landing;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /** When the booking was made; a takeoff's ground hold is measured from here. */
+    public long getRequestedAt() {
+        return requestedAt;
+    }
+
+    @Override
+    public String toString() {
+        return (landing ? "Landing" : "Takeoff") + " of Aircraft " + aircraftId + " at " + timeMillis + " ms";
+    }
+}
@@ -0,0 +1,169 @@
+package airport;
+
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Runway operations booked at one airport, in whole seconds and kept sorted. Operations must
+ * be at least {@code separation} seconds apart, so the first free time from some moment is
+ * found by walking forward over the bookings around it once. Bookings more than one
+ * separation in the past no longer constrain anything and are dropped as time passes.
+ * Not thread-safe; the {@link AirportControlManager} lock guards it.
+ */
+class RunwayCalendar {
+
+    private final long separation;
+    private long[] times = new long[16];
+    private int[] aircraftIds = new int[16];
+    private int start; // bookings before this index have expired
+    private int end;
+
+    RunwayCalendar(int separationSeconds) {
+        this.separation = Math.max(0, separationSeconds);
+    }
+
+    /** First second at or after {@code from} that is at least one separation away from every booking. */
+    long firstFree(long from) {
+        long t = from;
+        // Bookings after t - separation are the only ones that can be too close to t or later.
+        for (int i = lowerBound(t - separation + 1); i < end && times[i] < t + separation; i++) {
+            t = times[i] + separation;
+        }
+        return t;
+    }
+
+    boolean isFree(long time) {
+        return firstFree(time) == time;
+    }
+
+    /** Adds a booking; callers book free times, except for operations that already happened. */
+    void book(long time, int aircraftId) {
+        if (end == times.length) {
+            makeRoom();
+        }
+        int i = lowerBound(time + 1); // after bookings at the same second
+        System.arraycopy(times, i, times, i + 1, end - i);
+        System.arraycopy(aircraftIds, i, aircraftIds, i + 1, end - i);
+        times[i] = time;
+        aircraftIds[i] = aircraftId;
+        end++;
+    }
+
+    /**
+     * Books an operation that has already happened at {@code time}, free or not, and gives up
+     * the later bookings it leaves less than a separation away.
+     *
+     * @return number of bookings given up
+     */
+    int bookHappened(long time, int aircraftId) {
+        int from = lowerBound(time);
+        int to = lowerBound(time + separation);
+        System.arraycopy(times, to, times, from, end - to);
+        System.arraycopy(aircraftIds, to, aircraftIds, from, end - to);
+        end -= to - from;
+        book(time, aircraftId);
+        return to - from;
+    }
+
+    /**
+     * Whether the aircraft's booking at {@code time} was given up by {@link #bookHappened}.
+     * A booking that has merely expired by {@code now} was not.
+     */
+    boolean wasGivenUp(long time, int aircraftId, long now) {
+        if (time <= now - separation) {
+            return false;
+        }
+        for (int i = lowerBound(time); i < end && times[i] == time; i++) {
+            if (aircraftIds[i] == aircraftId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Removes the aircraft's booking at {@code time}; returns false if there was none. */
+    boolean cancel(long time, int aircraftId) {
+        for (int i = lowerBound(time); i < end && times[i] == time; i++) {
+            if (aircraftIds[i] == aircraftId) {
+                System.arraycopy(times, i + 1, times, i, end - i - 1);
+                System.arraycopy(aircraftIds, i + 1, aircraftIds, i, end - i - 1);
+                end--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Drops bookings that can no longer be too close to {@code now} or anything after it. */
+    void expire(long now) {
+        while (start < end && times[start] <= now - separation) {
+            start++;
+        }
+    }
+
+    /** Number of bookings that still constrain the future. */
+    int size() {
+        return end - start;
+    }
+
+    /** Time of the {@code index}-th live booking, in order. */
+    long timeAt(int index) {
+        return times[start + index];
+    }
+
+    int aircraftAt(int index) {
+        return aircraftIds[start + index];
+    }
+
+    /** Writes the live bookings. */
+    void writeTo(CheckpointWriter out) throws IOException {
+        out.putInt(end - start);
+        out.putLongs(times, start, end - start);
+        out.putInts(aircraftIds, start, end - start);
+    }
+
+    /** Replaces the bookings with those written by {@link #writeTo}. */
+    void readFrom(CheckpointReader in) {
+        int count = in.getCount(8 + 4);
+        if (times.length < count) {
+            int capacity = Integer.highestOneBit(count) << 1;
+            times = new long[capacity];
+            aircraftIds = new int[capacity];
+        }
+        in.getLongs(times, 0, count);
+        in.getInts(aircraftIds, 0, count);
+        start = 0;
+        end = count;
+    }
+
+    // Index of the first live booking at or after time.
+    private int lowerBound(long time) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Slides the live bookings to the front, growing the arrays only if they are mostly live.
+    private void makeRoom() {
+        int live = end - start;
+        if (live * 2 > times.length) {
+            times = Arrays.copyOf(times, times.length * 2);
+            aircraftIds = Arrays.copyOf(aircraftIds, aircraftIds.length * 2);
+        }
+        System.arraycopy(times, start, times, 0, live);
+        System.arraycopy(aircraftIds, start, aircraftIds, 0, live);
+        start = 0;
+        end = live;
+    }
+}
@@ -0,0 +1,56 @@
+package airport;
+
+import java.util.List;
+
+/**
+ * Free-list over an airport's slots with O(1) acquire and release.
+ * Not thread-safe; the {@link AirportControlManager} lock guards it.
+ */
+class SlotAllocator {
+
+    private final List<Slot> slots;
+    private final int[] free;
+    private int freeCount;
+
+    SlotAllocator(List<Slot> slots) {
+        this.slots = slots;
+        this.free = new int[slots.size()];
+        reset();
+    }
+
+    /** Rebuilds the free list from the slots' availability, e.g. after it was restored. */
+    void reset() {
+        freeCount = 0;
+        // Pushed in reverse so the lowest slot id is handed out first, as before.
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            if (slots.get(i).isAvailable()) {
+                free[freeCount++] = i;
+            }
+        }
+    }
+
+    Slot acquire() {
+        if (freeCount == 0) {
+            return null;
+        }
+        Slot slot = slots.get(free[--freeCount]);
+        slot.setAvailable(false);
+        return slot;
+    }
+
+    void release(Slot slot) {
+        if (slot.isAvailable()) {
+            throw new IllegalStateException(slot + " is not in use");
+        }
+        slot.setAvailable(true);
+        free[freeCount++] = slot.getId();
+    }
+
+    boolean hasFreeSlot() {
+        return freeCount > 0;
+    }
+
+    int freeSlots() {
+        return freeCount;
+    }
+}
@@ -0,0 +1,31 @@
+package airport;
+
+import metrics.Histogram;
+
+/**
+ * Distribution of how long aircraft waited for a takeoff or landing slot, in simulated
+ * milliseconds.
+ */
+public class WaitStats extends Histogram {
+
+    public double getMeanMillis() {
+        return getMean();
+    }
+
+    public long getMaxMillis() {
+        return getMax();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100) of recorded waits.
+     */
+    public long getPercentileMillis(double percentile) {
+        return getPercentile(percentile);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("waits=%d mean=%.0fms p99=%dms max=%dms",
+                getCount(), getMean(), getPercentile(99), getMax());
+    }
+}
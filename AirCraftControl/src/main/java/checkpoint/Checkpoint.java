@@ -0,0 +1,193 @@
+package checkpoint;
+
+import aircraft.FleetState;
+import airport.Airport;
+import airport.AirportControlManager;
+import manager.AirTrafficControl;
+import scenario.Scenario;
+import simulation.ScaledClock;
+import simulation.SimulationClock;
+import simulation.SimulationEngine;
+import simulation.VirtualClock;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The complete state of a tick-engine run in a binary file, to pause a long scenario and
+ * resume it later, or to warm-start runs from an interesting moment. The file holds, little
+ * endian:
+ * <ul>
+ *   <li>header: magic, version, simulated time</li>
+ *   <li>airports: id, x, slot count, separation, then the runway state: last operation,
+ *       slots in use, bookings</li>
+ *   <li>fleet: the store's columns (position, velocity, cruise profile, flags) in bulk, then
+ *       each aircraft's route, avoidance waypoints, reservations and itinerary</li>
+ *   <li>length-prefixed sections: open conflicts, engine, scenario position</li>
+ * </ul>
+ * It is written between ticks, with the engine stopped, to a temporary file that is then
+ * moved over the target, so a crash never leaves half a checkpoint. Reading maps the file and
+ * rebuilds the clock, airports and fleet at once; the air traffic control, engine and scenario
+ * are restored into once built around them.
+ */
+public final class Checkpoint {
+
+    static final int MAGIC = 0x4154434B; // "ATCK"
+    static final int VERSION = 1;
+
+    private final SimulationClock clock;
+    private final List<Airport> airports;
+    private final FleetState fleet;
+    private final CheckpointReader conflicts;
+    private final CheckpointReader engine;
+    private final CheckpointReader scenario;
+
+    private Checkpoint(SimulationClock clock, List<Airport> airports, FleetState fleet, CheckpointReader conflicts,
+                       CheckpointReader engine, CheckpointReader scenario) {
+        this.clock = clock;
+        this.airports = airports;
+        this.fleet = fleet;
+        this.conflicts = conflicts;
+        this.engine = engine;
+        this.scenario = scenario;
+    }
+
+    /**
+     * Writes the state of a run to {@code file}, replacing it. {@code scenario} is null when
+     * the run has no flight schedule.
+     *
+     * @return size of the checkpoint in bytes
+     */
+    public static long write(Path file, SimulationClock clock, List<Airport> airports, FleetState fleet,
+                             AirTrafficControl atc, SimulationEngine engine, Scenario scenario) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long bytes;
+        try (CheckpointWriter out = new CheckpointWriter(temp)) {
+            out.putInt(MAGIC).putInt(VERSION).putLong(clock.currentTimeMillis());
+            out.putInt(airports.size());
+            for (Airport airport : airports) {
+                AirportControlManager control = airport.getControlManager();
+                out.putInt(airport.getId()).putDouble(airport.getX()).putInt(airport.getSlots().size())
+                        .putInt(control.getTimeBetween());
+                control.writeTo(out);
+            }
+            fleet.writeTo(out);
+            out.beginSection();
+            atc.writeTo(out);
+            out.endSection();
+            out.beginSection();
+            engine.writeTo(out);
+            out.endSection();
+            out.beginSection();
+            if (scenario != null) {
+                scenario.writeTo(out);
+            }
+            out.endSection();
+            bytes = out.position();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bytes;
+    }
+
+    /**
+     * Reads {@code file} and rebuilds the airports and the fleet on a clock of the same kind
+     * as {@code clock} (virtual, or scaled at the same speed) that starts at the checkpoint's
+     * time, since every booking is an absolute time.
+     */
+    public static Checkpoint read(Path file, SimulationClock clock) throws IOException {
+        CheckpointReader in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16) {
+                throw new IllegalArgumentException(file + " is not a checkpoint");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large to restore: " + size + " bytes");
+            }
+            in = new CheckpointReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException(file + " is not a checkpoint");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(file + " has unsupported checkpoint version " + version);
+        }
+        SimulationClock resumed = resume(clock, in.getLong());
+
+        int airportCount = in.getCount(4 + 8 + 4 + 4);
+        List<Airport> airports = new ArrayList<>(airportCount);
+        Map<Integer, Airport> airportsById = new HashMap<>();
+        for (int i = 0; i < airportCount; i++) {
+            int id = in.getInt();
+            double x = in.getDouble();
+            int slots = in.getInt();
+            int timeBetween = in.getInt();
+            Airport airport = new Airport(id, x, slots, timeBetween, resumed);
+            if (airportsById.putIfAbsent(id, airport) != null) {
+                throw new IllegalArgumentException(file + " holds Airport " + id + " twice");
+            }
+            airport.getControlManager().readFrom(in);
+            airports.add(airport);
+        }
+        FleetState fleet = new FleetState();
+        fleet.readFrom(in, airportsById, resumed);
+        return new Checkpoint(resumed, Collections.unmodifiableList(airports), fleet, in.section(), in.section(),
+                in.section());
+    }
+
+    /** The clock to run on, at the checkpoint's time. */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    public List<Airport> getAirports() {
+        return airports;
+    }
+
+    public FleetState getFleet() {
+        return fleet;
+    }
+
+    /** Reopens the conflicts that were open, in an air traffic control built on {@link #getFleet()}. */
+    public void restore(AirTrafficControl atc) {
+        atc.readFrom(conflicts);
+    }
+
+    public void restore(SimulationEngine simulationEngine) {
+        simulationEngine.readFrom(engine);
+    }
+
+    /** Whether the run had a flight schedule, to be resumed with {@link #resumeScenario(Path)}. */
+    public boolean hasScenario() {
+        return scenario.hasRemaining();
+    }
+
+    /** Goes on releasing the flights of {@code file}, the scenario the run was started with. */
+    public Scenario resumeScenario(Path file) throws IOException {
+        if (!hasScenario()) {
+            throw new IllegalArgumentException("The checkpoint was taken without a scenario");
+        }
+        return Scenario.resume(file, fleet, clock, airports, scenario);
+    }
+
+    private static SimulationClock resume(SimulationClock clock, long timeMillis) {
+        if (clock instanceof VirtualClock) {
+            return new VirtualClock(timeMillis);
+        }
+        double speed = clock instanceof ScaledClock scaled ? scaled.getSpeed() : 1;
+        return new ScaledClock(speed, timeMillis);
+    }
+}
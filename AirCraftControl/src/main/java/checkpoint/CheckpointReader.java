@@ -0,0 +1,93 @@
+package checkpoint;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Sequential reader over a checkpoint held in a (normally memory-mapped) buffer, the read
+ * side of {@link CheckpointWriter}. Arrays are copied out in bulk through typed views.
+ * Reading past the end throws {@link IllegalArgumentException}: the file is truncated or not
+ * the version it claims.
+ */
+public final class CheckpointReader {
+
+    private final ByteBuffer buffer;
+
+    CheckpointReader(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public byte getByte() {
+        need(1);
+        return buffer.get();
+    }
+
+    public int getInt() {
+        need(4);
+        return buffer.getInt();
+    }
+
+    public long getLong() {
+        need(8);
+        return buffer.getLong();
+    }
+
+    public double getDouble() {
+        need(8);
+        return buffer.getDouble();
+    }
+
+    public void getBytes(byte[] into, int from, int count) {
+        need(count);
+        buffer.get(into, from, count);
+    }
+
+    public void getInts(int[] into, int from, int count) {
+        need(count * 4L);
+        buffer.asIntBuffer().get(into, from, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    public void getLongs(long[] into, int from, int count) {
+        need(count * 8L);
+        buffer.asLongBuffer().get(into, from, count);
+        buffer.position(buffer.position() + count * 8);
+    }
+
+    public void getDoubles(double[] into, int from, int count) {
+        need(count * 8L);
+        buffer.asDoubleBuffer().get(into, from, count);
+        buffer.position(buffer.position() + count * 8);
+    }
+
+    /** Reads a count and checks it against what is left, before anything is sized by it. */
+    public int getCount(int bytesEach) {
+        int count = getInt();
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt checkpoint: count " + count + " at " + (buffer.position() - 4));
+        }
+        return count;
+    }
+
+    /** Takes the next section written by {@link CheckpointWriter#beginSection()} as a reader of its own. */
+    CheckpointReader section() {
+        long length = getLong();
+        need(length);
+        ByteBuffer section = buffer.slice(buffer.position(), (int) length);
+        buffer.position(buffer.position() + (int) length);
+        return new CheckpointReader(section);
+    }
+
+    boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    private void need(long bytes) {
+        if (bytes < 0 || bytes > buffer.remaining()) {
+            throw new IllegalArgumentException("Checkpoint ends early: " + bytes + " bytes needed at "
+                    + buffer.position() + ", " + buffer.remaining() + " left",
+                    new BufferUnderflowException());
+        }
+    }
+}
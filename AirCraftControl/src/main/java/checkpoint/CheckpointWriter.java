@@ -0,0 +1,159 @@
+package checkpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential writer of a checkpoint file. Values go through one direct buffer that is written
+ * out whenever it fills; arrays are copied in bulk through the buffer's typed views, so a
+ * column of a million doubles costs a few large copies rather than a million puts.
+ * <p>
+ * A section is prefixed with its length, filled in when it ends, so a reader can set it
+ * aside and apply it later.
+ */
+public final class CheckpointWriter implements Closeable {
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long flushed; // bytes written to the channel so far
+    private long sectionStart = -1;
+
+    CheckpointWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    public CheckpointWriter putByte(byte value) throws IOException {
+        ensure(1);
+        buffer.put(value);
+        return this;
+    }
+
+    public CheckpointWriter putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public CheckpointWriter putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public CheckpointWriter putDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    public CheckpointWriter putBytes(byte[] values, int from, int count) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, room(1));
+            buffer.put(values, from, n);
+            from += n;
+            count -= n;
+        }
+        return this;
+    }
+
+    public CheckpointWriter putInts(int[] values, int from, int count) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, room(4));
+            buffer.asIntBuffer().put(values, from, n);
+            buffer.position(buffer.position() + n * 4);
+            from += n;
+            count -= n;
+        }
+        return this;
+    }
+
+    public CheckpointWriter putLongs(long[] values, int from, int count) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, room(8));
+            buffer.asLongBuffer().put(values, from, n);
+            buffer.position(buffer.position() + n * 8);
+            from += n;
+            count -= n;
+        }
+        return this;
+    }
+
+    public CheckpointWriter putDoubles(double[] values, int from, int count) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, room(8));
+            buffer.asDoubleBuffer().put(values, from, n);
+            buffer.position(buffer.position() + n * 8);
+            from += n;
+            count -= n;
+        }
+        return this;
+    }
+
+    /** Starts a length-prefixed section; sections do not nest. */
+    public void beginSection() throws IOException {
+        if (sectionStart >= 0) {
+            throw new IllegalStateException("Checkpoint section already open");
+        }
+        putLong(0);
+        sectionStart = position();
+    }
+
+    public void endSection() throws IOException {
+        if (sectionStart < 0) {
+            throw new IllegalStateException("No checkpoint section open");
+        }
+        long length = position() - sectionStart;
+        long lengthAt = sectionStart - 8;
+        if (lengthAt >= flushed) {
+            buffer.putLong((int) (lengthAt - flushed), length);
+        } else {
+            ByteBuffer patch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, length);
+            while (patch.hasRemaining()) {
+                channel.write(patch, lengthAt + patch.position());
+            }
+        }
+        sectionStart = -1;
+    }
+
+    /** Bytes written so far. */
+    public long position() {
+        return flushed + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    // Elements of the given size that fit in the buffer now, flushing it if none does.
+    private int room(int elementBytes) throws IOException {
+        ensure(elementBytes);
+        return buffer.remaining() / elementBytes;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
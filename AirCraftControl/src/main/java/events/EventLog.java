@@ -0,0 +1,193 @@
+package events;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log of simulation events. Producers (aircraft, airports, ATC) write fixed-size
+ * records into a preallocated ring buffer without locking or allocating; a background thread
+ * turns them into text. When the buffer is full new records are dropped and counted rather
+ * than blocking the producer.
+ */
+public final class EventLog {
+
+    private static final EventLog SHARED = new EventLog(1 << 16, System.out);
+
+    private final int mask;
+    private final int[] types;
+    private final int[] aircraftIds;
+    private final int[] args1;
+    private final int[] args2;
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] times;
+    // published[i] == seq + 1 once record seq has been fully written to index i
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile long written;
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDropped;
+
+    private volatile Verbosity verbosity = Verbosity.DEBUG;
+    private volatile EventSink sink;
+    private volatile Verbosity sinkVerbosity = Verbosity.OFF;
+    private final PrintStream out;
+    private Thread consumer;
+
+    public EventLog(int capacity, PrintStream out) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.types = new int[capacity];
+        this.aircraftIds = new int[capacity];
+        this.args1 = new int[capacity];
+        this.args2 = new int[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.times = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.out = out;
+    }
+
+    /**
+     * The log used by the simulation classes. Its consumer thread starts on first use.
+     */
+    public static EventLog get() {
+        SHARED.ensureStarted();
+        return SHARED;
+    }
+
+    public void setVerbosity(Verbosity verbosity) {
+        this.verbosity = verbosity;
+    }
+
+    public Verbosity getVerbosity() {
+        return verbosity;
+    }
+
+    /**
+     * Also hands every record up to {@code verbosity} to {@code sink}, whatever is printed.
+     * Pass null to remove it.
+     */
+    public void setSink(EventSink sink, Verbosity verbosity) {
+        this.sink = sink;
+        this.sinkVerbosity = sink == null ? Verbosity.OFF : verbosity;
+    }
+
+    /** Whether records of this type are kept at all, i.e. printed or passed to the sink. */
+    public boolean isEnabled(EventType type) {
+        return includes(verbosity, type) || includes(sinkVerbosity, type);
+    }
+
+    private static boolean includes(Verbosity verbosity, EventType type) {
+        return type.getLevel().compareTo(verbosity) <= 0 && verbosity != Verbosity.OFF;
+    }
+
+    /**
+     * Appends a record. Never blocks and never allocates; returns false if the record was
+     * filtered out or dropped because the buffer was full.
+     */
+    public boolean publish(EventType type, int aircraftId, int arg1, int arg2, double x, double y, long timeMillis) {
+        if (!isEnabled(type)) {
+            return false;
+        }
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= types.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        int i = (int) seq & mask;
+        types[i] = type.ordinal();
+        aircraftIds[i] = aircraftId;
+        args1[i] = arg1;
+        args2[i] = arg2;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = timeMillis;
+        published.set(i, seq + 1);
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getPublishedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Waits until everything published so far has been written out.
+     */
+    public void flush() {
+        long target = claimed.get();
+        while (written < target && consumer != null && consumer.isAlive()) {
+            LockSupport.parkNanos(100_000);
+        }
+        out.flush();
+    }
+
+    private synchronized void ensureStarted() {
+        if (consumer == null) {
+            consumer = new Thread(this::consume, "event-log");
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+    }
+
+    private void consume() {
+        StringBuilder batch = new StringBuilder();
+        while (!Thread.currentThread().isInterrupted()) {
+            long seq = consumed;
+            int i = (int) seq & mask;
+            if (published.get(i) != seq + 1) {
+                if (batch.length() > 0) {
+                    out.print(batch);
+                    batch.setLength(0);
+                }
+                out.flush();
+                written = seq;
+                reportDrops();
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            EventType type = EventType.ofOrdinal(types[i]);
+            if (includes(verbosity, type)) {
+                batch.append(type.format(aircraftIds[i], args1[i], args2[i], xs[i], ys[i]))
+                        .append(System.lineSeparator());
+            }
+            EventSink target = sink;
+            if (target != null && includes(sinkVerbosity, type)) {
+                try {
+                    target.onEvent(type, aircraftIds[i], args1[i], args2[i], xs[i], ys[i], times[i]);
+                } catch (RuntimeException e) {
+                    // A failing sink must not stop the log; it is dropped instead.
+                    e.printStackTrace();
+                    setSink(null, Verbosity.OFF);
+                }
+            }
+            consumed = seq + 1;
+            if (batch.length() > 64 * 1024) {
+                out.print(batch);
+                batch.setLength(0);
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long total = dropped.get();
+        if (total != reportedDropped) {
+            out.println("[event log] " + (total - reportedDropped) + " events dropped (buffer full), " + total + " in total");
+            reportedDropped = total;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package events;
+
+/**
+ * Receives event records in their binary form, e.g. to store them. Called on the event log's
+ * consumer thread, in publication order.
+ */
+public interface EventSink {
+
+    void onEvent(EventType type, int aircraftId, int arg1, int arg2, double x, double y, long timeMillis);
+
+    /** A sink passing every record to both; either may be null. */
+    static EventSink both(EventSink first, EventSink second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return (type, aircraftId, arg1, arg2, x, y, timeMillis) -> {
+            first.onEvent(type, aircraftId, arg1, arg2, x, y, timeMillis);
+            second.onEvent(type, aircraftId, arg1, arg2, x, y, timeMillis);
+        };
+    }
+}
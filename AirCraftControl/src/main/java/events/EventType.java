@@ -0,0 +1,118 @@
+package events;
+
+import java.util.Locale;
+
+/**
+ * Kinds of records in the {@link EventLog}, with the level they are shown at and how the
+ * consumer turns the record fields (aircraft id, two int arguments, x, y) back into text.
+ */
+public enum EventType {
+    POSITION(Verbosity.DEBUG) {
+        @Override
+        public String format(int aircraftId, int arg1, int arg2, double x, double y) {
+            return String.format(Locale.ROOT, "Aircraft %d position updated to (%.0f, %.0f)", aircraftId, x, y);
+        }
+    },
+    WAYPOINT_REACHED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int arg1, int arg2, double x, double y) {
+            return "Aircraft " + aircraftId + " reached waypoint at (" + x + ", " + y + ")";
+        }
+    },
+    TAKEOFF_GRANTED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int slot, int airport, double x, double y) {
+            return "Takeoff GRANTED to Aircraft " + aircraftId + " from slot " + slot + " at Airport " + airport;
+        }
+    },
+    LANDING_GRANTED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int slot, int airport, double x, double y) {
+            return "Landing GRANTED to Aircraft " + aircraftId + " on slot " + slot + " at Airport " + airport;
+        }
+    },
+    TAKEN_OFF(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int slot, int airport, double x, double y) {
+            return "Aircraft " + aircraftId + " has TAKEN OFF from Airport " + airport + ", slot " + slot;
+        }
+    },
+    SLOT_RELEASED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int slot, int airport, double x, double y) {
+            return "Slot " + slot + " is now available again at Airport " + airport;
+        }
+    },
+    LANDED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int arg1, int airport, double x, double y) {
+            return "Aircraft " + aircraftId + " has LANDED at Airport " + airport;
+        }
+    },
+    CONFLICT(Verbosity.WARN) {
+        @Override
+        public String format(int aircraftId, int otherId, int arg2, double distance, double y) {
+            return String.format(Locale.ROOT, "WARNING !!!!! Aircraft %d and Aircraft %d are too close! (Distance: %.0f)",
+                    aircraftId, otherId, distance);
+        }
+    },
+    CONFLICT_PREDICTED(Verbosity.WARN) {
+        @Override
+        public String format(int aircraftId, int otherId, int arg2, double closestDistance, double seconds) {
+            return String.format(Locale.ROOT, "CAUTION: Aircraft %d and Aircraft %d predicted to come within %.0f in %.0fs",
+                    aircraftId, otherId, closestDistance, seconds);
+        }
+    },
+    REROUTE(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int arg1, int arg2, double x, double y) {
+            return "Aircraft " + aircraftId + " activated conflict avoidance. Waypoint added: (" + x + ", " + y + ")";
+        }
+    },
+    REVERT(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int arg1, int arg2, double cruiseAltitude, double y) {
+            return "Aircraft " + aircraftId + " reverted to original route. CruiseAltitude: " + cruiseAltitude;
+        }
+    },
+    HANDED_OFF(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int fromShard, int toShard, double x, double y) {
+            return String.format(Locale.ROOT, "Aircraft %d handed off from shard %d to shard %d at (%.0f, %.0f)",
+                    aircraftId, fromShard, toShard, x, y);
+        }
+    },
+    CONFLICT_CLEARED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int otherId, int arg2, double closestDistance, double seconds) {
+            return String.format(Locale.ROOT, "Conflict between Aircraft %d and Aircraft %d cleared after %.0fs (closest %.0f)",
+                    aircraftId, otherId, seconds, closestDistance);
+        }
+    },
+    LEG_STARTED(Verbosity.INFO) {
+        @Override
+        public String format(int aircraftId, int fromAirport, int toAirport, double groundSeconds, double y) {
+            return String.format(Locale.ROOT, "Aircraft %d turning around at Airport %d for Airport %d, ready in %.0fs",
+                    aircraftId, fromAirport, toAirport, groundSeconds);
+        }
+    };
+
+    private static final EventType[] VALUES = values();
+
+    private final Verbosity level;
+
+    EventType(Verbosity level) {
+        this.level = level;
+    }
+
+    public Verbosity getLevel() {
+        return level;
+    }
+
+    /** The record as a line of text, as the event log prints it. */
+    public abstract String format(int aircraftId, int arg1, int arg2, double x, double y);
+
+    public static EventType ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,11 @@
+package events;
+
+/**
+ * How much of the event log is written out. Each level includes the ones above it.
+ */
+public enum Verbosity {
+    OFF,
+    WARN,   // conflicts only
+    INFO,   // grants, takeoffs, landings, reroutes
+    DEBUG   // plus every position update
+}
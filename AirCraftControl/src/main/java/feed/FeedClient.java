@@ -0,0 +1,342 @@
+package feed;
+
+import events.EventType;
+import events.Verbosity;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Subscribes to a {@link PositionFeed} and keeps the fleet it describes up to date: keyframes
+ * replace it, deltas patch it. Also a sample radar client:
+ * <pre>
+ *   java -cp target/classes feed.FeedClient HOST:PORT [SECONDS]
+ * </pre>
+ * prints conflicts as they arrive and a line per second about the fleet and the traffic.
+ */
+public class FeedClient implements Closeable {
+
+    // Status flag bits, as in the fleet store.
+    private static final int TOOK_OFF = 1;
+    private static final int LANDED = 2;
+
+    private final SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocate(1 << 16);
+    private final Map<Integer, Integer> indexById = new HashMap<>();
+    private int count;
+    private int[] ids = new int[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private float[] vxs = new float[16];
+    private float[] vys = new float[16];
+    private byte[] flags = new byte[16];
+    private long epoch;
+    private long timeMillis;
+    private boolean synced;
+    private boolean ended;
+    private long bytesReceived;
+    private long keyframes;
+    private long deltas;
+
+    // Events of the last message, if it was an events batch.
+    private int eventCount;
+    private EventType[] eventTypes = new EventType[0];
+    private int[] eventIds = new int[0];
+    private int[] eventArgs1 = new int[0];
+    private int[] eventArgs2 = new int[0];
+    private double[] eventXs = new double[0];
+    private double[] eventYs = new double[0];
+    private long[] eventTimes = new long[0];
+
+    private FeedClient(SocketChannel channel) {
+        this.channel = channel;
+        in.flip(); // empty, ready to read from
+    }
+
+    /** Connects and checks the feed's header. */
+    public static FeedClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        FeedClient client = new FeedClient(channel);
+        try {
+            client.fill(8);
+            int magic = client.in.getInt();
+            int version = client.in.getInt();
+            if (magic != PositionFeed.MAGIC || version != PositionFeed.VERSION) {
+                throw new IOException("Not a position feed (version " + PositionFeed.VERSION + ") at " + address);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return client;
+    }
+
+    /**
+     * Reads and applies the next message, waiting for it.
+     *
+     * @return false once the feed has closed the connection
+     */
+    public boolean read() throws IOException {
+        eventCount = 0;
+        if (ended) {
+            return false;
+        }
+        try {
+            fill(4);
+            int length = in.getInt();
+            fill(length);
+            int end = in.position() + length;
+            byte tag = in.get();
+            switch (tag) {
+                case PositionFeed.KEYFRAME -> readKeyframe();
+                case PositionFeed.DELTA -> readDelta();
+                case PositionFeed.EVENTS -> readEvents();
+                default -> throw new IOException("Unknown feed message " + tag);
+            }
+            if (in.position() != end) {
+                throw new IOException("Malformed feed message " + tag);
+            }
+            return true;
+        } catch (EOFException e) {
+            ended = true; // a message cut short by the disconnect is dropped
+            return false;
+        }
+    }
+
+    /** Whether a keyframe has arrived, so the fleet is complete. */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public long getEpoch() { return epoch; }
+    public long getTimeMillis() { return timeMillis; }
+    public int size() { return count; }
+    public int getAircraftId(int index) { return ids[index]; }
+    public double getX(int index) { return xs[index]; }
+    public double getY(int index) { return ys[index]; }
+    public double getVelocityX(int index) { return vxs[index]; }
+    public double getVelocityY(int index) { return vys[index]; }
+    public byte getFlags(int index) { return flags[index]; }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getKeyframeCount() { return keyframes; }
+    public long getDeltaCount() { return deltas; }
+
+    /** Number of events in the last message read; 0 unless it was an events batch. */
+    public int getEventCount() { return eventCount; }
+    public EventType getEventType(int index) { return eventTypes[index]; }
+
+    /** The event as the event log would print it. */
+    public String formatEvent(int index) {
+        return eventTypes[index].format(eventIds[index], eventArgs1[index], eventArgs2[index],
+                eventXs[index], eventYs[index]);
+    }
+
+    public long getEventTimeMillis(int index) { return eventTimes[index]; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readKeyframe() {
+        epoch = in.getLong();
+        timeMillis = in.getLong();
+        int size = in.getInt();
+        count = 0;
+        indexById.clear();
+        for (int k = 0; k < size; k++) {
+            int i = add(in.getInt());
+            xs[i] = in.getFloat();
+            ys[i] = in.getFloat();
+            vxs[i] = in.getFloat();
+            vys[i] = in.getFloat();
+            flags[i] = in.get();
+        }
+        synced = true;
+        keyframes++;
+    }
+
+    private void readDelta() {
+        epoch = in.getLong();
+        timeMillis = in.getLong();
+        int changed = in.getInt();
+        int removed = in.getInt();
+        for (int k = 0; k < changed; k++) {
+            int id = in.getInt();
+            int mask = in.get();
+            Integer index = indexById.get(id);
+            int i = index != null ? index : add(id);
+            if ((mask & PositionFeed.X) != 0) {
+                xs[i] = in.getFloat();
+            }
+            if ((mask & PositionFeed.Y) != 0) {
+                ys[i] = in.getFloat();
+            }
+            if ((mask & PositionFeed.VX) != 0) {
+                vxs[i] = in.getFloat();
+            }
+            if ((mask & PositionFeed.VY) != 0) {
+                vys[i] = in.getFloat();
+            }
+            if ((mask & PositionFeed.FLAGS) != 0) {
+                flags[i] = in.get();
+            }
+        }
+        for (int k = 0; k < removed; k++) {
+            remove(in.getInt());
+        }
+        deltas++;
+    }
+
+    private void readEvents() throws IOException {
+        int n = in.getInt();
+        if (eventTypes.length < n) {
+            eventTypes = new EventType[n];
+            eventIds = new int[n];
+            eventArgs1 = new int[n];
+            eventArgs2 = new int[n];
+            eventXs = new double[n];
+            eventYs = new double[n];
+            eventTimes = new long[n];
+        }
+        EventType[] types = EventType.values();
+        for (int e = 0; e < n; e++) {
+            int type = in.getInt();
+            if (type < 0 || type >= types.length) {
+                throw new IOException("Unknown event type " + type);
+            }
+            eventTypes[e] = types[type];
+            eventIds[e] = in.getInt();
+            eventArgs1[e] = in.getInt();
+            eventArgs2[e] = in.getInt();
+            eventXs[e] = in.getDouble();
+            eventYs[e] = in.getDouble();
+            eventTimes[e] = in.getLong();
+        }
+        eventCount = n;
+    }
+
+    private int add(int id) {
+        if (count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            vxs = Arrays.copyOf(vxs, capacity);
+            vys = Arrays.copyOf(vys, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int i = count++;
+        ids[i] = id;
+        indexById.put(id, i);
+        return i;
+    }
+
+    // Moves the last aircraft into the removed one's place.
+    private void remove(int id) {
+        Integer index = indexById.remove(id);
+        if (index == null) {
+            return;
+        }
+        int i = index;
+        int last = --count;
+        if (i != last) {
+            ids[i] = ids[last];
+            xs[i] = xs[last];
+            ys[i] = ys[last];
+            vxs[i] = vxs[last];
+            vys[i] = vys[last];
+            flags[i] = flags[last];
+            indexById.put(ids[i], i);
+        }
+    }
+
+    // Makes at least n bytes readable in the buffer, reading (and growing it) as needed.
+    private void fill(int n) throws IOException {
+        if (in.remaining() >= n) {
+            return;
+        }
+        if (in.capacity() < n) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(n, in.capacity() * 2));
+            larger.put(in);
+            in = larger;
+        } else {
+            in.compact();
+        }
+        while (in.position() < n) {
+            int read = channel.read(in);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            bytesReceived += read;
+        }
+        in.flip();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: FeedClient HOST:PORT [SECONDS]");
+            return;
+        }
+        String address = args[0];
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port, got '" + address + "'");
+        }
+        long runNanos = args.length > 1 ? Math.round(Double.parseDouble(args[1]) * 1e9) : Long.MAX_VALUE;
+
+        InetSocketAddress feed = new InetSocketAddress(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+
+        // The simulation may still be starting up.
+        FeedClient connected = null;
+        for (int attempt = 0; connected == null; attempt++) {
+            try {
+                connected = connect(feed);
+            } catch (ConnectException e) {
+                if (attempt == 50) {
+                    System.out.println("No position feed at " + address + ".");
+                    System.exit(1);
+                }
+                Thread.sleep(200);
+            }
+        }
+        try (FeedClient client = connected) {
+            System.out.println("Connected to position feed at " + address + ".");
+            long start = System.nanoTime();
+            long nextReport = start + 1_000_000_000L;
+            while (System.nanoTime() - start < runNanos && client.read()) {
+                for (int e = 0; e < client.getEventCount(); e++) {
+                    if (client.getEventType(e).getLevel() == Verbosity.WARN) {
+                        System.out.println("[feed] " + client.formatEvent(e));
+                    }
+                }
+                if (System.nanoTime() >= nextReport && client.isSynced()) {
+                    System.out.println(client.summary());
+                    nextReport += 1_000_000_000L;
+                }
+            }
+            System.out.println(client.summary());
+        }
+    }
+
+    private String summary() {
+        int airborne = 0;
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & (TOOK_OFF | LANDED)) == TOOK_OFF) {
+                airborne++;
+            }
+        }
+        return String.format(Locale.ROOT, "[feed] t=%.1fs: %d aircraft, %d airborne; %d keyframes, %d deltas, %d KB received",
+                timeMillis / 1000.0, count, airborne, keyframes, deltas, bytesReceived / 1024);
+    }
+}
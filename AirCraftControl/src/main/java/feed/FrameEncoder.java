@@ -0,0 +1,202 @@
+package feed;
+
+import aircraft.FleetSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Turns fleet frames into feed messages. It remembers the last frame it encoded, as floats
+ * sorted by aircraft id, so a delta holds only the fields that changed since then and a
+ * keyframe can be produced from it at any time. Confined to the feed's selector thread.
+ */
+final class FrameEncoder {
+
+    private int count;
+    private int[] ids = new int[0];
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private float[] vxs = new float[0];
+    private float[] vys = new float[0];
+    private byte[] flags = new byte[0];
+    private long epoch;
+    private long timeMillis;
+
+    // Next state, swapped in once a delta has been written.
+    private int[] nextIds = new int[0];
+    private float[] nextXs = new float[0];
+    private float[] nextYs = new float[0];
+    private float[] nextVxs = new float[0];
+    private float[] nextVys = new float[0];
+    private byte[] nextFlags = new byte[0];
+    private long[] order = new long[0]; // id << 32 | index in the frame, sorted
+
+    private ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+
+    /** The frame as a delta against the previous one; the frame becomes the new state. */
+    ByteBuffer delta(FleetSnapshot frame) {
+        int size = frame.size();
+        ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            order[i] = (long) frame.getAircraftId(i) << 32 | i;
+        }
+        Arrays.sort(order, 0, size);
+
+        ByteBuffer out = begin(PositionFeed.DELTA, PositionFeed.DELTA_HEADER_BYTES
+                + (long) size * PositionFeed.DELTA_ENTRY_BYTES + (long) count * 4);
+        out.putLong(frame.getEpoch()).putLong(frame.getTimeMillis());
+        int countsAt = out.position();
+        out.putInt(0).putInt(0);
+
+        int changed = 0;
+        int next = 0;
+        int old = 0;
+        for (int k = 0; k < size; k++) {
+            int i = (int) order[k];
+            int id = frame.getAircraftId(i);
+            if (next > 0 && nextIds[next - 1] == id) {
+                continue; // the same aircraft twice: keep the first
+            }
+            while (old < count && ids[old] < id) {
+                old++; // gone; written as removed below
+            }
+            float x = (float) frame.getX(i);
+            float y = (float) frame.getY(i);
+            float vx = (float) frame.getVelocityX(i);
+            float vy = (float) frame.getVelocityY(i);
+            byte f = frame.getFlags(i);
+            int mask = PositionFeed.ALL_FIELDS;
+            if (old < count && ids[old] == id) {
+                mask = (x != xs[old] ? PositionFeed.X : 0) | (y != ys[old] ? PositionFeed.Y : 0)
+                        | (vx != vxs[old] ? PositionFeed.VX : 0) | (vy != vys[old] ? PositionFeed.VY : 0)
+                        | (f != flags[old] ? PositionFeed.FLAGS : 0);
+                old++;
+            }
+            if (mask != 0) {
+                out.putInt(id).put((byte) mask);
+                if ((mask & PositionFeed.X) != 0) {
+                    out.putFloat(x);
+                }
+                if ((mask & PositionFeed.Y) != 0) {
+                    out.putFloat(y);
+                }
+                if ((mask & PositionFeed.VX) != 0) {
+                    out.putFloat(vx);
+                }
+                if ((mask & PositionFeed.VY) != 0) {
+                    out.putFloat(vy);
+                }
+                if ((mask & PositionFeed.FLAGS) != 0) {
+                    out.put(f);
+                }
+                changed++;
+            }
+            nextIds[next] = id;
+            nextXs[next] = x;
+            nextYs[next] = y;
+            nextVxs[next] = vx;
+            nextVys[next] = vy;
+            nextFlags[next] = f;
+            next++;
+        }
+
+        // Removed: in the old state but not in the new one; both are sorted by id.
+        int removed = 0;
+        for (int o = 0, n = 0; o < count; o++) {
+            while (n < next && nextIds[n] < ids[o]) {
+                n++;
+            }
+            if (n == next || nextIds[n] != ids[o]) {
+                out.putInt(ids[o]);
+                removed++;
+            }
+        }
+        out.putInt(countsAt, changed).putInt(countsAt + 4, removed);
+        swap(next);
+        epoch = frame.getEpoch();
+        timeMillis = frame.getTimeMillis();
+        return finish();
+    }
+
+    /** The whole state as of the last delta, for a client that starts or restarts from it. */
+    ByteBuffer keyframe() {
+        ByteBuffer out = begin(PositionFeed.KEYFRAME, PositionFeed.KEYFRAME_HEADER_BYTES
+                + (long) count * PositionFeed.KEYFRAME_ENTRY_BYTES);
+        out.putLong(epoch).putLong(timeMillis).putInt(count);
+        for (int i = 0; i < count; i++) {
+            out.putInt(ids[i]).putFloat(xs[i]).putFloat(ys[i]).putFloat(vxs[i]).putFloat(vys[i]).put(flags[i]);
+        }
+        return finish();
+    }
+
+    /** Number of aircraft in the state. */
+    int size() {
+        return count;
+    }
+
+    // Starts a message in the scratch buffer: length (filled in by finish) and tag.
+    private ByteBuffer begin(byte tag, long maxBytes) {
+        long needed = 4 + 1 + maxBytes;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Frame too large for the feed: " + needed + " bytes");
+        }
+        if (scratch.capacity() < needed) {
+            scratch = ByteBuffer.allocate((int) Math.max(needed, scratch.capacity() * 2L));
+        }
+        scratch.clear();
+        scratch.putInt(0).put(tag);
+        return scratch;
+    }
+
+    // Copies the message out, so it can be queued to several clients while the next is built.
+    private ByteBuffer finish() {
+        scratch.putInt(0, scratch.position() - 4);
+        scratch.flip();
+        ByteBuffer message = ByteBuffer.allocate(scratch.remaining());
+        message.put(scratch).flip();
+        return message.asReadOnlyBuffer();
+    }
+
+    private void swap(int next) {
+        int[] oldIds = ids;
+        float[] oldXs = xs;
+        float[] oldYs = ys;
+        float[] oldVxs = vxs;
+        float[] oldVys = vys;
+        byte[] oldFlags = flags;
+        ids = nextIds;
+        xs = nextXs;
+        ys = nextYs;
+        vxs = nextVxs;
+        vys = nextVys;
+        flags = nextFlags;
+        nextIds = oldIds;
+        nextXs = oldXs;
+        nextYs = oldYs;
+        nextVxs = oldVxs;
+        nextVys = oldVys;
+        nextFlags = oldFlags;
+        count = next;
+    }
+
+    // Both state buffers hold at least size entries, keeping the current state.
+    private void ensureCapacity(int size) {
+        if (order.length >= size) {
+            return;
+        }
+        int capacity = Math.max(16, Integer.highestOneBit(size - 1) << 1);
+        order = new long[capacity];
+        ids = Arrays.copyOf(ids, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        vxs = Arrays.copyOf(vxs, capacity);
+        vys = Arrays.copyOf(vys, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        nextIds = new int[capacity];
+        nextXs = new float[capacity];
+        nextYs = new float[capacity];
+        nextVxs = new float[capacity];
+        nextVys = new float[capacity];
+        nextFlags = new byte[capacity];
+    }
+}
@@ -0,0 +1,367 @@
+package feed;
+
+import aircraft.FleetSnapshot;
+import events.EventSink;
+import events.EventType;
+import metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams fleet frames and events to any number of TCP subscribers, e.g. external radar
+ * displays, from one non-blocking selector thread. Publishing never waits for a client.
+ * <p>
+ * The stream starts with magic and version, then carries messages of an int length (of what
+ * follows) and a tag, all big-endian:
+ * <ul>
+ *   <li>keyframe: epoch, time, count, then per aircraft id, x, y, vx, vy (floats), flags</li>
+ *   <li>delta: epoch, time, changed count, removed count, then per changed aircraft id, a
+ *       field mask and the fields in it (x, y, vx, vy as floats, flags), then the removed ids.
+ *       An aircraft not in the previous frame comes with every field.</li>
+ *   <li>events: count, then per event type ordinal, aircraft id, two int arguments, x, y
+ *       (doubles) and time, as in the {@link events.EventLog}</li>
+ * </ul>
+ * A client first gets a keyframe and then the delta of every frame, so bandwidth follows
+ * what changed. Each client has a bounded queue of unsent bytes; a client that cannot keep
+ * up loses its queued frames and restarts from the next keyframe, and one that has not
+ * caught up for a while is disconnected. Frames published faster than the feed encodes them
+ * are merged: a delta is always against the last frame sent.
+ */
+public class PositionFeed implements EventSink, Closeable {
+
+    static final int MAGIC = 0x41544346; // "ATCF"
+    static final int VERSION = 1;
+
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+    static final byte EVENTS = 3;
+
+    static final int X = 1;
+    static final int Y = 2;
+    static final int VX = 4;
+    static final int VY = 8;
+    static final int FLAGS = 16;
+    static final int ALL_FIELDS = X | Y | VX | VY | FLAGS;
+
+    static final int KEYFRAME_HEADER_BYTES = 8 + 8 + 4;
+    static final int KEYFRAME_ENTRY_BYTES = 4 + 4 * 4 + 1;
+    static final int DELTA_HEADER_BYTES = 8 + 8 + 4 + 4;
+    static final int DELTA_ENTRY_BYTES = 4 + 1 + 4 * 4 + 1; // at most
+    static final int EVENTS_HEADER_BYTES = 4;
+    static final int EVENT_BYTES = 4 * 4 + 2 * 8 + 8;
+    private static final int EVENT_BATCH = 4096; // events held while the selector thread is busy
+
+    private static final LongAdder BYTES_SENT = Metrics.get().counter("feed.bytes.sent");
+    private static final LongAdder FRAMES_SKIPPED = Metrics.get().counter("feed.frames.skipped");
+    private static final LongAdder CLIENTS_DROPPED = Metrics.get().counter("feed.clients.dropped");
+    private static final LongAdder EVENTS_DROPPED = Metrics.get().counter("feed.events.dropped");
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final List<Client> clients = new ArrayList<>();
+    private final AtomicReference<FleetSnapshot> pendingFrame = new AtomicReference<>();
+    private ByteBuffer pendingEvents = ByteBuffer.allocate(EVENT_BATCH * EVENT_BYTES); // guarded by this
+    private ByteBuffer spareEvents = ByteBuffer.allocate(EVENT_BATCH * EVENT_BYTES);   // guarded by this
+    private int pendingEventCount;                                                     // guarded by this
+    private volatile int maxQueuedBytes = 4 << 20;
+    private volatile long dropAfterNanos = 5_000_000_000L;
+    private volatile int clientCount;
+    private volatile boolean open = true;
+
+    /** Listens on {@code address} (port 0 picks a free one) and starts serving. */
+    public PositionFeed(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        Metrics.get().gauge("feed.clients", () -> clientCount);
+        this.thread = Thread.ofPlatform().name("PositionFeed").daemon().start(this::serve);
+    }
+
+    /**
+     * Sets the backpressure: at most {@code maxQueuedBytes} unsent per client before it starts
+     * skipping frames, and a client still behind after {@code dropAfterMillis} (wall time) is
+     * disconnected. The limit must leave room for a keyframe of the whole fleet (21 bytes per
+     * aircraft). Defaults to 4 MB and 5 s.
+     */
+    public void setBackpressure(int maxQueuedBytes, long dropAfterMillis) {
+        if (maxQueuedBytes < 1) {
+            throw new IllegalArgumentException("queue limit must be positive: " + maxQueuedBytes);
+        }
+        if (dropAfterMillis < 0) {
+            throw new IllegalArgumentException("drop delay must not be negative: " + dropAfterMillis);
+        }
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.dropAfterNanos = dropAfterMillis * 1_000_000;
+    }
+
+    /** Port the feed listens on. */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /** Queues a frame for the clients; meant to be registered with {@code FleetPublisher.addListener}. */
+    public void publish(FleetSnapshot frame) {
+        if (pendingFrame.getAndSet(frame) == null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void onEvent(EventType type, int aircraftId, int arg1, int arg2, double x, double y, long timeMillis) {
+        synchronized (this) {
+            if (pendingEvents.remaining() < EVENT_BYTES) {
+                EVENTS_DROPPED.increment(); // the selector thread is far behind
+                return;
+            }
+            pendingEvents.putInt(type.ordinal()).putInt(aircraftId).putInt(arg1).putInt(arg2)
+                    .putDouble(x).putDouble(y).putLong(timeMillis);
+            pendingEventCount++;
+        }
+        selector.wakeup();
+    }
+
+    /** Stops serving and disconnects every client. */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        clients.clear();
+        clientCount = 0;
+        server.close();
+        selector.close();
+    }
+
+    private void serve() {
+        try {
+            while (open) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            read(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(client);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+                distribute();
+            }
+            distribute(); // what was published last, as far as the sockets take it
+        } catch (IOException e) {
+            if (open) {
+                System.out.println("Position feed stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        clientCount = clients.size();
+        ByteBuffer hello = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+        client.queue.add(hello);
+        client.queuedBytes = hello.remaining();
+        flush(client);
+        System.out.println("Position feed: client " + channel.getRemoteAddress() + " connected.");
+    }
+
+    // Clients send nothing; reading only notices them hang up.
+    private void read(Client client) {
+        try {
+            client.readBuffer.clear();
+            if (client.channel.read(client.readBuffer) < 0) {
+                drop(client, "disconnected");
+            }
+        } catch (IOException e) {
+            drop(client, e.getMessage());
+        }
+    }
+
+    // Hands the pending events and the latest frame to every client and writes what fits.
+    private void distribute() {
+        long now = System.nanoTime();
+        ByteBuffer events = takeEvents();
+        if (events != null) {
+            for (int c = clients.size() - 1; c >= 0; c--) {
+                offer(clients.get(c), events, false, now);
+            }
+        }
+        FleetSnapshot frame = pendingFrame.getAndSet(null);
+        if (frame != null) {
+            ByteBuffer delta = encoder.delta(frame);
+            ByteBuffer keyframe = null;
+            for (int c = clients.size() - 1; c >= 0; c--) {
+                Client client = clients.get(c);
+                if (client.synced) {
+                    offer(client, delta, false, now);
+                } else {
+                    if (keyframe == null) {
+                        keyframe = encoder.keyframe();
+                    }
+                    offer(client, keyframe, true, now);
+                }
+            }
+        }
+        for (int c = clients.size() - 1; c >= 0; c--) {
+            flush(clients.get(c));
+        }
+    }
+
+    private void offer(Client client, ByteBuffer message, boolean keyframe, long now) {
+        if (client.queuedBytes + message.remaining() > maxQueuedBytes) {
+            fallBehind(client, now);
+            return;
+        }
+        client.queue.add(message.duplicate());
+        client.queuedBytes += message.remaining();
+        if (keyframe) {
+            client.synced = true;
+        }
+    }
+
+    // Drops what the client has not started receiving; it restarts from a keyframe.
+    private void fallBehind(Client client, long now) {
+        FRAMES_SKIPPED.increment();
+        if (client.behindSince == 0) {
+            client.behindSince = now;
+        } else if (now - client.behindSince > dropAfterNanos) {
+            CLIENTS_DROPPED.increment();
+            drop(client, "too slow");
+            return;
+        }
+        ByteBuffer current = client.queue.peek();
+        boolean started = current != null && current.position() > 0;
+        client.queue.clear();
+        client.queuedBytes = 0;
+        if (started) {
+            client.queue.add(current); // finish the message on the wire
+            client.queuedBytes = current.remaining();
+        }
+        client.synced = false;
+    }
+
+    private void flush(Client client) {
+        try {
+            while (!client.queue.isEmpty()) {
+                ByteBuffer head = client.queue.peek();
+                int written = client.channel.write(head);
+                client.queuedBytes -= written;
+                BYTES_SENT.add(written);
+                if (head.hasRemaining()) {
+                    break;
+                }
+                client.queue.poll();
+            }
+        } catch (IOException e) {
+            drop(client, e.getMessage());
+            return;
+        }
+        if (client.queue.isEmpty()) {
+            client.behindSince = 0; // caught up
+        }
+        if (client.key.isValid()) {
+            client.key.interestOps(client.queue.isEmpty() ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void drop(Client client, String reason) {
+        if (!clients.remove(client)) {
+            return;
+        }
+        clientCount = clients.size();
+        client.key.cancel();
+        try {
+            System.out.println("Position feed: client " + client.channel.getRemoteAddress() + " dropped (" + reason + ").");
+            client.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    // The events published since the last call as one message, or null if there were none.
+    private ByteBuffer takeEvents() {
+        ByteBuffer events;
+        int count;
+        synchronized (this) {
+            if (pendingEventCount == 0) {
+                return null;
+            }
+            events = pendingEvents;
+            count = pendingEventCount;
+            pendingEvents = spareEvents;
+            spareEvents = events; // only this thread touches it until the next swap
+            pendingEventCount = 0;
+        }
+        events.flip();
+        ByteBuffer message = ByteBuffer.allocate(4 + 1 + EVENTS_HEADER_BYTES + events.remaining());
+        message.putInt(message.capacity() - 4).put(EVENTS).putInt(count).put(events).flip();
+        events.clear();
+        return message.asReadOnlyBuffer();
+    }
+
+    private static final class Client {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+        SelectionKey key;
+        long queuedBytes;
+        boolean synced;    // has the state: deltas can follow
+        long behindSince;  // nanos; 0 while keeping up
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
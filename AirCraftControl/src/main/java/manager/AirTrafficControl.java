@@ -1,21 +1,86 @@
 package manager;
 
 import aircraft.Aircraft;
+import aircraft.FleetPublisher;
+import aircraft.FleetSnapshot;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import events.EventLog;
+import events.EventType;
+import metrics.ConflictSweepEvent;
+import metrics.Histogram;
+import metrics.Metrics;
+import simulation.SimulationClock;
 import ui.SimulationGUI;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
-public class AirTrafficControl extends Thread {
+public class AirTrafficControl implements Runnable {
+
+    private static final Histogram SWEEP_MICROS = Metrics.get().histogram("atc.sweep.micros");
+    private static final Histogram SWEEP_PAIRS = Metrics.get().histogram("atc.sweep.pairs");
+    private static final LongAdder CONFLICTS = Metrics.get().counter("atc.conflicts");
+    private static final LongAdder CONFLICTS_OPENED = Metrics.get().counter("atc.conflicts.opened");
+    private static final LongAdder CONFLICTS_CLOSED = Metrics.get().counter("atc.conflicts.closed");
+    private static final LongAdder CLUSTERS = Metrics.get().counter("atc.clusters");
+    private static final Histogram LARGEST_CLUSTER = Metrics.get().histogram("atc.cluster.largest");
+
+    // Below this many airborne aircraft a parallel sweep costs more than it saves.
+    private static final int PARALLEL_THRESHOLD = 1024;
+    // Slices per thread, so threads that finish early can steal the rest.
+    private static final int SLICES_PER_THREAD = 4;
+    // How many sweep intervals ahead the broad phase looks, at most. A radius that grows with
+    // the whole lookahead would soon make grid cells as wide as the airspace.
+    private static final int SEARCH_SWEEPS = 2;
 
     private final List<Aircraft> aircraftList;
     private final double safeDistanceThreshold;
     private final int checkIntervalMillis;
+    private final SimulationClock clock;
     private SimulationGUI gui;
+    private FleetPublisher snapshotSource;
+    private double lookaheadSeconds = 0;
+    private double holdMargin;
+    private int exitSweeps = 3;
+
+    private final SpatialGrid grid = new SpatialGrid();
+    private SweepRange[] ranges = { new SweepRange() };
+    private ForkJoinPool pool; // null: sequential sweep
+    private Aircraft[] airborne = new Aircraft[0]; // null for remote entries (another shard's aircraft)
+    private int[] ids = new int[0];
+    private boolean[] remoteAvoiding = new boolean[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] vxs = new double[0];
+    private double[] vys = new double[0];
+    private double maxSpeed;
+    private final ConflictTable openConflicts = new ConflictTable();
+    private final ConflictClusters clusters = new ConflictClusters();
+    private final ConflictTable.CloseListener onClose = this::conflictClosed;
+    private int closedThisSweep;
+    private long checkCount;
+    private long pairsTested;
 
     public AirTrafficControl(List<Aircraft> aircraftList, double safeDistanceThreshold, int checkIntervalMillis) {
+        this(aircraftList, safeDistanceThreshold, checkIntervalMillis, SimulationClock.realTime());
+    }
+
+    public AirTrafficControl(List<Aircraft> aircraftList, double safeDistanceThreshold, int checkIntervalMillis,
+                             SimulationClock clock) {
         this.aircraftList = aircraftList;
         this.safeDistanceThreshold = safeDistanceThreshold;
         this.checkIntervalMillis = checkIntervalMillis;
+        this.clock = clock;
+        this.holdMargin = safeDistanceThreshold * 0.1;
+        Metrics.get().gauge("atc.safeDistance", () -> this.safeDistanceThreshold);
+        Metrics.get().gauge("atc.checkInterval.ms", () -> this.checkIntervalMillis);
+        Metrics.get().gauge("atc.lookahead.s", () -> this.lookaheadSeconds);
+        Metrics.get().gauge("atc.conflicts.open", () -> openConflicts.size());
     }
 
     @Override
@@ -25,7 +90,7 @@ public class AirTrafficControl extends Thread {
         while (!Thread.currentThread().isInterrupted()) {
             checkForConflicts();
             try {
-                Thread.sleep(checkIntervalMillis);
+                clock.sleep(checkIntervalMillis);
             } catch (InterruptedException e) {
                 System.out.println("AirTrafficControl interrupted.");
                 Thread.currentThread().interrupt();
@@ -34,51 +99,320 @@ public class AirTrafficControl extends Thread {
         }
     }
 
-    private void checkForConflicts() {
-        int size = aircraftList.size();
+    /**
+     * One sweep: detects the pairs in conflict and updates the open conflicts. Only changes
+     * act on aircraft: the open pairs are grouped into clusters, every cluster with a newly
+     * opened pair is resolved in one pass (see {@link ConflictClusters}), and an aircraft
+     * leaves conflict avoidance once none of its pairs is open any more. Opened, escalated
+     * and cleared pairs are published to the event log.
+     */
+    public void checkForConflicts() {
+        ConflictSweepEvent event = new ConflictSweepEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int conflicts = 0;
+        int opened = 0;
+        int count = collectAirborne(currentFrame());
+        double horizon = lookaheadSeconds;
+        double holdDistance = safeDistanceThreshold + holdMargin;
+        // Two aircraft can close in by at most 2 * maxSpeed per second.
+        double searchSeconds = Math.min(horizon, SEARCH_SWEEPS * checkIntervalMillis / 1000.0);
+        double searchRadius = holdDistance + searchSeconds * 2 * maxSpeed;
+        grid.rebuild(xs, ys, count, searchRadius);
+        int slices = detect(count, holdDistance, horizon);
+        long sweep = ++checkCount;
+        long now = clock.currentTimeMillis();
 
-        for (int i = 0; i < size; i++) {
-            Aircraft a1 = aircraftList.get(i);
-            if (!a1.hasTakenOff() || a1.isLanded()) {
-                continue;
-            }
-            for (int j = i + 1; j < size; j++) {
-                Aircraft a2 = aircraftList.get(j);
-                if (!a2.hasTakenOff() || a2.isLanded()) {
-                    continue;
+        clusters.reset(count);
+        int pairCount = 0;
+        for (int s = 0; s < slices; s++) {
+            SweepRange range = ranges[s];
+            pairCount += range.pairCount;
+            for (int c = 0; c < range.conflictCount; c++) {
+                long pair = range.conflicts[c];
+                int i = SpatialGrid.first(pair);
+                int j = SpatialGrid.second(pair);
+                double distance = range.distances[c];
+                double seconds = range.secondsToConflict[c];
+                boolean inside = distance <= safeDistanceThreshold;
+                if (inside) {
+                    conflicts++;
                 }
-                double distance = calculateDistance(a1, a2);
-
-                if (distance <= safeDistanceThreshold) {
-                    String warning = String.format("WARNING !!!!! Aircraft %d and Aircraft %d are too close! (Distance: %.0f)",
-                            a1.getAircraftId(), a2.getAircraftId(), distance);
-                    System.out.println(warning);
-                    if (gui != null) {
-                        gui.displayWarning(warning);
-                    }
-                    // Choose one aircraft to reroute if neither is already in conflict avoidance.
-                    if (!a1.isInConflictAvoidance() && !a2.isInConflictAvoidance()) {
-                        if (a1.getAircraftId() < a2.getAircraftId()) {
-                            a1.reroute();
-                        } else {
-                            a2.reroute();
-                        }
+                int e = openConflicts.find(ids[i], ids[j]);
+                if (e >= 0) {
+                    // Still open; report only a predicted conflict that has now happened.
+                    openConflicts.see(e, distance, sweep);
+                    if (inside && seconds == 0 && openConflicts.becomeActual(e)) {
+                        reportConflict(ids[i], ids[j], distance, 0);
                     }
-                } else {
-                    a1.revertToOriginalRoute();
-                    a2.revertToOriginalRoute();
+                    clusters.connect(i, j, false);
+                    continue;
+                }
+                if (!inside) {
+                    continue; // between safe and hold distance: keeps open pairs open, opens none
                 }
+                openConflicts.open(ids[i], ids[j], distance, seconds == 0, sweep, now);
+                opened++;
+                reportConflict(ids[i], ids[j], distance, seconds);
+                // Needs a reroute if neither aircraft is already in conflict avoidance.
+                clusters.connect(i, j, !isInConflictAvoidance(i) && !isInConflictAvoidance(j));
+            }
+        }
+        // A remote aircraft is rerouted by its own shard, which sees the same pairs.
+        clusters.resolve(airborne, ids, xs, ys, vxs, safeDistanceThreshold);
+        pairsTested += pairCount;
+        closedThisSweep = 0;
+        openConflicts.closeStale(sweep, exitSweeps, onClose);
+        for (int i = 0; i < count; i++) {
+            Aircraft aircraft = airborne[i];
+            if (aircraft != null && aircraft.isInConflictAvoidance() && openConflicts.openCount(ids[i]) == 0) {
+                aircraft.revertToOriginalRoute();
+            }
+        }
+
+        SWEEP_MICROS.record((System.nanoTime() - start) / 1000);
+        SWEEP_PAIRS.record(pairCount);
+        CONFLICTS.add(conflicts);
+        CONFLICTS_OPENED.add(opened);
+        CONFLICTS_CLOSED.add(closedThisSweep);
+        CLUSTERS.add(clusters.getClusterCount());
+        if (clusters.getClusterCount() > 0) {
+            LARGEST_CLUSTER.record(clusters.getLargestCluster());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.airborne = count;
+            event.pairsTested = pairCount;
+            event.conflicts = conflicts;
+            event.opened = opened;
+            event.closed = closedThisSweep;
+            event.open = openConflicts.size();
+            event.clusters = clusters.getClusterCount();
+            event.safeDistance = safeDistanceThreshold;
+            event.lookaheadSeconds = horizon;
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs detection over the sweep arrays, split into slices of consecutive indices: one
+     * slice on this thread, or several on the pool once enough aircraft are airborne.
+     *
+     * @return number of slices filled, in index order
+     */
+    private int detect(int count, double holdDistance, double horizon) {
+        if (pool == null || count < PARALLEL_THRESHOLD) {
+            SweepRange range = ranges[0];
+            range.from = 0;
+            range.to = count;
+            range.detect(grid, xs, ys, vxs, vys, holdDistance, horizon);
+            return 1;
+        }
+        int slices = ranges.length;
+        for (int s = 0; s < slices; s++) {
+            ranges[s].from = (int) ((long) count * s / slices);
+            ranges[s].to = (int) ((long) count * (s + 1) / slices);
+        }
+        pool.invoke(new DetectTask(0, slices, holdDistance, horizon));
+        return slices;
+    }
+
+    private boolean isInConflictAvoidance(int index) {
+        Aircraft aircraft = airborne[index];
+        return aircraft != null ? aircraft.isInConflictAvoidance() : remoteAvoiding[index];
+    }
+
+    private void conflictClosed(int id1, int id2, long openedMillis, double closestDistance) {
+        closedThisSweep++;
+        long now = clock.currentTimeMillis();
+        EventLog.get().publish(EventType.CONFLICT_CLEARED, id1, id2, 0,
+                closestDistance, (now - openedMillis) / 1000.0, now);
+    }
+
+    private void reportConflict(int id1, int id2, double distance, double secondsToConflict) {
+        if (secondsToConflict == 0) {
+            EventLog.get().publish(EventType.CONFLICT, id1, id2, 0,
+                    distance, 0, clock.currentTimeMillis());
+            if (gui != null) {
+                gui.displayWarning(String.format("WARNING !!!!! Aircraft %d and Aircraft %d are too close! (Distance: %.0f)",
+                        id1, id2, distance));
+            }
+        } else {
+            EventLog.get().publish(EventType.CONFLICT_PREDICTED, id1, id2, 0,
+                    distance, secondsToConflict, clock.currentTimeMillis());
+            if (gui != null) {
+                gui.displayWarning(String.format("CAUTION: Aircraft %d and Aircraft %d predicted within %.0f in %.0fs",
+                        id1, id2, distance, secondsToConflict));
+            }
+        }
+    }
+
+    /**
+     * The frame published by the engine for this tick, or a fresh capture when running on
+     * our own thread.
+     */
+    private FleetSnapshot currentFrame() {
+        FleetSnapshot frame = snapshotSource != null ? snapshotSource.latest() : null;
+        return frame != null ? frame : FleetSnapshot.capture(aircraftList, 0, clock.currentTimeMillis());
+    }
+
+    /**
+     * Copies the airborne aircraft of the frame, in list order, into the sweep arrays.
+     */
+    private int collectAirborne(FleetSnapshot frame) {
+        int count = 0;
+        maxSpeed = 0;
+        for (int i = 0; i < frame.size(); i++) {
+            if (!frame.isAirborne(i)) {
+                continue;
+            }
+            if (count == airborne.length) {
+                int capacity = Math.max(16, count * 2);
+                airborne = Arrays.copyOf(airborne, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                remoteAvoiding = Arrays.copyOf(remoteAvoiding, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                vxs = Arrays.copyOf(vxs, capacity);
+                vys = Arrays.copyOf(vys, capacity);
             }
+            airborne[count] = frame.getAircraft(i);
+            ids[count] = frame.getAircraftId(i);
+            remoteAvoiding[count] = frame.isInConflictAvoidance(i);
+            xs[count] = frame.getX(i);
+            ys[count] = frame.getY(i);
+            vxs[count] = frame.getVelocityX(i);
+            vys[count] = frame.getVelocityY(i);
+            maxSpeed = Math.max(maxSpeed, Math.hypot(vxs[count], vys[count]));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Turns on predictive detection: pairs whose straight-line closest point of approach
+     * within the next {@code seconds} is inside the safe distance are treated as conflicts
+     * now. With a lookahead the sweep can run much less often. 0 (the default) only flags
+     * pairs that are already too close.
+     * <p>
+     * Only pairs that can close in within two check intervals are candidates, so the grid
+     * cells stay small however long the lookahead. A pair that is farther apart is predicted
+     * on a later sweep, once it gets that close: it is still caught before it is in conflict,
+     * but a lookahead longer than two intervals no longer brings its warning forward.
+     */
+    public void setLookaheadSeconds(double seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("lookahead must not be negative: " + seconds);
+        }
+        this.lookaheadSeconds = seconds;
+    }
+
+    /**
+     * Sets the hysteresis on open conflicts. A pair opens inside the safe distance, but stays
+     * open until it has been farther than the safe distance plus {@code holdMargin} for
+     * {@code exitSweeps} consecutive sweeps. Defaults to 10% of the safe distance and 3 sweeps.
+     */
+    public void setConflictHysteresis(double holdMargin, int exitSweeps) {
+        if (holdMargin < 0) {
+            throw new IllegalArgumentException("hold margin must not be negative: " + holdMargin);
+        }
+        if (exitSweeps < 1) {
+            throw new IllegalArgumentException("exit sweeps must be at least 1: " + exitSweeps);
         }
+        this.holdMargin = holdMargin;
+        this.exitSweeps = exitSweeps;
+    }
+
+    /**
+     * Runs conflict detection on {@code threads} ForkJoin threads when many aircraft are
+     * airborne. The result is the same as a sequential sweep: slices are merged in pair
+     * order before any conflict is resolved. 1 (the default) keeps it on the calling thread.
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + threads);
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads == 1 ? null : new ForkJoinPool(threads);
+        ranges = new SweepRange[threads == 1 ? 1 : threads * SLICES_PER_THREAD];
+        for (int s = 0; s < ranges.length; s++) {
+            ranges[s] = new SweepRange();
+        }
+    }
+
+    public int getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    /** Number of conflict sweeps run so far. */
+    public long getCheckCount() {
+        return checkCount;
     }
 
-    private double calculateDistance(Aircraft a1, Aircraft a2) {
-        double dx = a1.getX() - a2.getX();
-        double dy = a1.getY() - a2.getY();
-        return Math.sqrt(dx * dx + dy * dy);
+    /** Number of pairs currently held open as conflicts. */
+    public int getOpenConflictCount() {
+        return openConflicts.size();
+    }
+
+    /** Number of candidate pairs the sweeps have tested for a conflict. */
+    public long getPairsTested() {
+        return pairsTested;
+    }
+
+    /**
+     * Writes the conflicts held open, so a restored run keeps acting on transitions only and
+     * does not reroute aircraft for pairs it already resolved. Between sweeps only.
+     */
+    public void writeTo(CheckpointWriter out) throws IOException {
+        openConflicts.writeTo(out, checkCount);
+    }
+
+    /** Reopens the conflicts written by {@link #writeTo}; none may be open yet. */
+    public void readFrom(CheckpointReader in) {
+        if (openConflicts.size() != 0) {
+            throw new IllegalStateException(openConflicts.size() + " conflicts are open already");
+        }
+        openConflicts.readFrom(in, checkCount);
+    }
+
+    /**
+     * Makes the sweep read the frames published by the engine instead of the live aircraft.
+     */
+    public void setSnapshotSource(FleetPublisher snapshotSource) {
+        this.snapshotSource = snapshotSource;
     }
 
     public void setGUI(SimulationGUI gui) {
         this.gui = gui;
     }
+
+    // Splits the slices [from, to) in halves down to one slice per task.
+    private final class DetectTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final double holdDistance;
+        private final double horizon;
+
+        DetectTask(int from, int to, double holdDistance, double horizon) {
+            this.from = from;
+            this.to = to;
+            this.holdDistance = holdDistance;
+            this.horizon = horizon;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                ranges[from].detect(grid, xs, ys, vxs, vys, holdDistance, horizon);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DetectTask(from, mid, holdDistance, horizon),
+                    new DetectTask(mid, to, holdDistance, horizon));
+        }
+    }
 }
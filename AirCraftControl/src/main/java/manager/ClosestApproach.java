@@ -0,0 +1,29 @@
+package manager;
+
+/**
+ * Closest point of approach of two aircraft flying straight at constant velocity.
+ */
+final class ClosestApproach {
+
+    private ClosestApproach() {
+    }
+
+    /**
+     * Time in seconds, within [0, horizon], at which the distance between two aircraft is
+     * smallest, given their relative position (dx, dy) and relative velocity (dvx, dvy).
+     */
+    static double time(double dx, double dy, double dvx, double dvy, double horizon) {
+        double speedSq = dvx * dvx + dvy * dvy;
+        if (speedSq == 0) {
+            return 0;
+        }
+        double t = -(dx * dvx + dy * dvy) / speedSq;
+        return Math.max(0, Math.min(horizon, t));
+    }
+
+    static double distanceAt(double dx, double dy, double dvx, double dvy, double t) {
+        double px = dx + dvx * t;
+        double py = dy + dvy * t;
+        return Math.sqrt(px * px + py * py);
+    }
+}
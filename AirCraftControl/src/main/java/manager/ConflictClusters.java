@@ -0,0 +1,197 @@
+package manager;
+
+import aircraft.Aircraft;
+import aircraft.Route;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the conflicts of one sweep cluster by cluster instead of pair by pair. Aircraft
+ * in conflict are joined into connected components of the conflict graph (union-find over
+ * sweep indices). In every cluster where a new conflict needs action, the aircraft involved
+ * get avoidance waypoints together: the highest id keeps its route, and the others climb to
+ * distinct levels that keep the safe distance from each other and from every altitude already
+ * used in the cluster. Rerouting one aircraft into its neighbour, only to reroute again on the
+ * next sweep, does not happen within a cluster.
+ * <p>
+ * Buffers are indexed like the sweep arrays and reused from sweep to sweep.
+ */
+final class ConflictClusters {
+
+    static final double CLIMB = 2000;  // minimum climb for a rerouted aircraft
+    static final double AHEAD = 500;   // waypoint distance ahead, in the direction of flight
+
+    private int[] parents = new int[0];
+    private boolean[] members = new boolean[0];
+    private boolean[] candidates = new boolean[0]; // in a new conflict that neither side avoids yet
+    private long[] order = new long[0];            // cluster root << 32 | index, sorted
+    private double[] levels = new double[8];       // altitudes taken in the cluster being resolved
+    private int count;
+    private int memberCount;
+
+    private int clusterCount;
+    private int largestCluster;
+
+    /** Starts a sweep over {@code count} airborne aircraft. */
+    void reset(int count) {
+        if (parents.length < count) {
+            int capacity = Math.max(16, Integer.highestOneBit(count - 1) << 1);
+            parents = new int[capacity];
+            members = new boolean[capacity];
+            candidates = new boolean[capacity];
+            order = new long[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+        }
+        Arrays.fill(members, 0, count, false);
+        Arrays.fill(candidates, 0, count, false);
+        this.count = count;
+        memberCount = 0;
+        clusterCount = 0;
+        largestCluster = 0;
+    }
+
+    /** Adds a conflict between sweep indices i and j to the graph. */
+    void connect(int i, int j, boolean needsAction) {
+        mark(i);
+        mark(j);
+        if (needsAction) {
+            candidates[i] = true;
+            candidates[j] = true;
+        }
+        int a = find(i);
+        int b = find(j);
+        if (a != b) {
+            parents[Math.max(a, b)] = Math.min(a, b);
+        }
+    }
+
+    /**
+     * Reroutes the candidates of every cluster. {@code airborne} holds null for another
+     * shard's aircraft, which are left to their own shard but still count as occupying their
+     * altitude.
+     */
+    void resolve(Aircraft[] airborne, int[] ids, double[] xs, double[] ys, double[] vxs, double safeDistance) {
+        int n = 0;
+        for (int i = 0; i < count && n < memberCount; i++) {
+            if (members[i]) {
+                order[n++] = (long) find(i) << 32 | i;
+            }
+        }
+        Arrays.sort(order, 0, n);
+        for (int from = 0; from < n; ) {
+            int root = (int) (order[from] >>> 32);
+            int to = from + 1;
+            while (to < n && (int) (order[to] >>> 32) == root) {
+                to++;
+            }
+            resolveCluster(from, to, airborne, ids, xs, ys, vxs, safeDistance);
+            clusterCount++;
+            largestCluster = Math.max(largestCluster, to - from);
+            from = to;
+        }
+    }
+
+    /** Clusters found by the last {@link #resolve}. */
+    int getClusterCount() {
+        return clusterCount;
+    }
+
+    int getLargestCluster() {
+        return largestCluster;
+    }
+
+    private void resolveCluster(int from, int to, Aircraft[] airborne, int[] ids, double[] xs, double[] ys,
+                                double[] vxs, double safeDistance) {
+        int anchor = -1;
+        for (int k = from; k < to; k++) {
+            int i = index(k);
+            if (candidates[i] && (anchor < 0 || ids[i] > ids[anchor])) {
+                anchor = i;
+            }
+        }
+        if (anchor < 0) {
+            return; // every conflict here is already being avoided
+        }
+
+        int levelCount = 0;
+        for (int k = from; k < to; k++) {
+            int i = index(k);
+            if (!candidates[i] || i == anchor || airborne[i] == null) {
+                levelCount = addLevel(levelCount, plannedAltitude(airborne[i], ys[i]));
+            }
+        }
+        // Lowest ids first, so the result does not depend on the order pairs were found in.
+        for (int pass = 0; pass < to - from; pass++) {
+            int next = -1;
+            for (int k = from; k < to; k++) {
+                int i = index(k);
+                if (candidates[i] && i != anchor && airborne[i] != null && (next < 0 || ids[i] < ids[next])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            candidates[next] = false;
+            double level = freeLevel(ys[next] + CLIMB, levelCount, safeDistance);
+            levelCount = addLevel(levelCount, level);
+            double direction = vxs[next] < 0 ? -1 : 1;
+            airborne[next].rerouteVia(xs[next] + direction * AHEAD, level);
+        }
+    }
+
+    // Lowest altitude from candidate up that is a safe distance from every level taken.
+    private double freeLevel(double candidate, int levelCount, double safeDistance) {
+        for (int k = 0; k < levelCount; k++) {
+            if (levels[k] > candidate - safeDistance && levels[k] < candidate + safeDistance) {
+                candidate = levels[k] + safeDistance;
+            }
+        }
+        return candidate;
+    }
+
+    // Keeps levels sorted, so one ascending pass of freeLevel settles on a free altitude.
+    private int addLevel(int levelCount, double level) {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+        }
+        int k = levelCount;
+        while (k > 0 && levels[k - 1] > level) {
+            levels[k] = levels[k - 1];
+            k--;
+        }
+        levels[k] = level;
+        return levelCount + 1;
+    }
+
+    // Where an aircraft already avoiding will level off; others are taken at their altitude.
+    private static double plannedAltitude(Aircraft aircraft, double y) {
+        if (aircraft == null || !aircraft.isInConflictAvoidance()) {
+            return y;
+        }
+        Route route = aircraft.getRoute();
+        int waypoints = route.getWaypointCount();
+        return waypoints > 0 ? route.getWaypointY(waypoints - 1) : y;
+    }
+
+    private int index(int k) {
+        return (int) order[k];
+    }
+
+    private void mark(int i) {
+        if (!members[i]) {
+            members[i] = true;
+            memberCount++;
+        }
+    }
+
+    private int find(int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]]; // path halving
+            i = parents[i];
+        }
+        return i;
+    }
+}
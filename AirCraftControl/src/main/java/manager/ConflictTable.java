@@ -0,0 +1,267 @@
+package manager;
+
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The conflicts ATC currently considers open, kept from sweep to sweep and keyed by the
+ * pair of aircraft ids. A pair opens when it comes inside the safe distance and stays open
+ * while it is seen within the hold distance; it closes once it has not been seen for a
+ * number of sweeps. Callers act on the transitions only, so an aircraft in conflict with one
+ * partner is not disturbed by its other pairs, and one that drifts around the safe distance
+ * does not flap.
+ * <p>
+ * Entries live in parallel arrays; two open-addressing indexes map a pair to its entry and
+ * an aircraft id to its number of open pairs, so a sweep allocates nothing once warmed up.
+ */
+final class ConflictTable {
+
+    private final LongIndex pairs = new LongIndex();
+    private final LongIndex openCounts = new LongIndex();
+
+    private long[] keys = new long[16];
+    private long[] openedMillis = new long[16];
+    private long[] lastSeen = new long[16];        // sweep number
+    private double[] closestDistances = new double[16];
+    private boolean[] actual = new boolean[16];    // inside the safe distance now, not only predicted
+    private int size;
+
+    static long key(int id1, int id2) {
+        return ((long) Math.min(id1, id2) << 32) | (Math.max(id1, id2) & 0xffffffffL);
+    }
+
+    static int firstId(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int secondId(long key) {
+        return (int) key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Entry of the pair, or -1 if it is not open. */
+    int find(int id1, int id2) {
+        return pairs.get(key(id1, id2));
+    }
+
+    /** Opens the pair; it must not be open already. */
+    int open(int id1, int id2, double distance, boolean actual, long sweep, long nowMillis) {
+        if (size == keys.length) {
+            grow();
+        }
+        int e = size++;
+        keys[e] = key(id1, id2);
+        openedMillis[e] = nowMillis;
+        lastSeen[e] = sweep;
+        closestDistances[e] = distance;
+        this.actual[e] = actual;
+        pairs.put(keys[e], e);
+        openCounts.put(id1, openCount(id1) + 1);
+        openCounts.put(id2, openCount(id2) + 1);
+        return e;
+    }
+
+    /** Records that the open pair was seen within the hold distance this sweep. */
+    void see(int e, double distance, long sweep) {
+        lastSeen[e] = sweep;
+        closestDistances[e] = Math.min(closestDistances[e], distance);
+    }
+
+    /** Marks the pair as inside the safe distance now; returns whether it was only predicted before. */
+    boolean becomeActual(int e) {
+        boolean was = actual[e];
+        actual[e] = true;
+        return !was;
+    }
+
+    /**
+     * Closes every pair not seen for {@code exitSweeps} sweeps, reporting each to the
+     * listener after it has been removed.
+     */
+    void closeStale(long sweep, int exitSweeps, CloseListener listener) {
+        int e = 0;
+        while (e < size) {
+            if (sweep - lastSeen[e] < exitSweeps) {
+                e++;
+                continue;
+            }
+            long key = keys[e];
+            long opened = openedMillis[e];
+            double closest = closestDistances[e];
+            remove(e); // moves the last entry into e, so e is looked at again
+            listener.closed(firstId(key), secondId(key), opened, closest);
+        }
+    }
+
+    /**
+     * Writes the open pairs. When each was last seen is written as a number of sweeps before
+     * {@code sweep}, so the table can be restored under any sweep count.
+     */
+    void writeTo(CheckpointWriter out, long sweep) throws IOException {
+        out.putInt(size);
+        out.putLongs(keys, 0, size);
+        out.putLongs(openedMillis, 0, size);
+        for (int e = 0; e < size; e++) {
+            out.putLong(sweep - lastSeen[e]);
+        }
+        out.putDoubles(closestDistances, 0, size);
+        for (int e = 0; e < size; e++) {
+            out.putByte((byte) (actual[e] ? 1 : 0));
+        }
+    }
+
+    /** Opens the pairs written by {@link #writeTo}, as of sweep number {@code sweep}. */
+    void readFrom(CheckpointReader in, long sweep) {
+        int count = in.getCount(8 + 8 + 8 + 8 + 1);
+        long[] pairKeys = new long[count];
+        long[] opened = new long[count];
+        long[] ages = new long[count];
+        double[] closest = new double[count];
+        in.getLongs(pairKeys, 0, count);
+        in.getLongs(opened, 0, count);
+        in.getLongs(ages, 0, count);
+        in.getDoubles(closest, 0, count);
+        for (int e = 0; e < count; e++) {
+            int first = firstId(pairKeys[e]);
+            int second = secondId(pairKeys[e]);
+            if (find(first, second) >= 0) {
+                throw new IllegalArgumentException("Conflict between Aircraft " + first + " and " + second
+                        + " is open twice");
+            }
+            open(first, second, closest[e], in.getByte() != 0, sweep - ages[e], opened[e]);
+        }
+    }
+
+    /** Number of open pairs the aircraft is in. */
+    int openCount(int aircraftId) {
+        return Math.max(0, openCounts.get(aircraftId));
+    }
+
+    private void remove(int e) {
+        long key = keys[e];
+        pairs.remove(key);
+        release(firstId(key));
+        release(secondId(key));
+        int last = --size;
+        if (e != last) {
+            keys[e] = keys[last];
+            openedMillis[e] = openedMillis[last];
+            lastSeen[e] = lastSeen[last];
+            closestDistances[e] = closestDistances[last];
+            actual[e] = actual[last];
+            pairs.put(keys[e], e);
+        }
+    }
+
+    private void release(int aircraftId) {
+        int count = openCounts.get(aircraftId) - 1;
+        if (count > 0) {
+            openCounts.put(aircraftId, count);
+        } else {
+            openCounts.remove(aircraftId);
+        }
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        openedMillis = Arrays.copyOf(openedMillis, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        closestDistances = Arrays.copyOf(closestDistances, capacity);
+        actual = Arrays.copyOf(actual, capacity);
+    }
+
+    interface CloseListener {
+        void closed(int id1, int id2, long openedMillis, double closestDistance);
+    }
+
+    /**
+     * Linear-probing map from a long key to a non-negative int; removal shifts the following
+     * run back instead of leaving tombstones.
+     */
+    static final class LongIndex {
+        private long[] keys = new long[32];
+        private int[] values = new int[32];
+        private boolean[] used = new boolean[32];
+        private int size;
+
+        /** Value of the key, or -1 if absent. */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (used[i]) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (!used[i]) {
+                return;
+            }
+            // Pull back later entries of the run that would no longer be reachable past the hole.
+            int hole = i;
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            used[hole] = false;
+            size--;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
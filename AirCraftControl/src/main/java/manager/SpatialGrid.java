@@ -0,0 +1,124 @@
+package manager;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the 2D airspace, used as the broad phase of the conflict sweep.
+ * Cells are as wide as the search radius, so every pair within that radius sits in
+ * the same or in neighbouring cells. The grid is rebuilt from scratch on every sweep,
+ * with that sweep's radius.
+ */
+class SpatialGrid {
+
+    private double cellSize;
+
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] next = new int[0];   // chain of aircraft sharing a bucket
+    private int[] heads = new int[0];  // first aircraft per bucket, -1 if empty
+    private int mask;
+
+    /**
+     * Rebuilds the grid over the first {@code count} positions with cells {@code radius}
+     * wide. After that, {@link #collectPairs} may be called from several threads at once.
+     */
+    void rebuild(double[] xs, double[] ys, int count, double radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("radius must be positive: " + radius);
+        }
+        cellSize = radius;
+        rebuild(xs, ys, count);
+    }
+
+    /**
+     * Adds to {@code out} every pair (i, j), i < j, with i in [from, to), whose distance is
+     * at most the radius (with a tiny tolerance, callers make the exact check).
+     * Pairs are encoded as {@code (long) i << 32 | j} and sorted, i.e. in the order
+     * an exhaustive nested loop over the same indices would visit them; the pairs of
+     * consecutive ranges therefore concatenate into one sorted list.
+     *
+     * @return number of pairs added
+     */
+    int collectPairs(double[] xs, double[] ys, int from, int to, Pairs out) {
+        int start = out.count;
+        double maxDistanceSq = cellSize * cellSize * (1 + 1e-9);
+
+        for (int i = from; i < to; i++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int cx = cellX[i] + dx;
+                    int cy = cellY[i] + dy;
+                    for (int j = heads[bucket(cx, cy)]; j != -1; j = next[j]) {
+                        if (j <= i || cellX[j] != cx || cellY[j] != cy) {
+                            continue;
+                        }
+                        double ddx = xs[i] - xs[j];
+                        double ddy = ys[i] - ys[j];
+                        if (ddx * ddx + ddy * ddy <= maxDistanceSq) {
+                            out.add((long) i << 32 | j);
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(out.pairs, start, out.count);
+        return out.count - start;
+    }
+
+    static int first(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    static int second(long pair) {
+        return (int) pair;
+    }
+
+    private void rebuild(double[] xs, double[] ys, int count) {
+        if (cellX.length < count) {
+            int capacity = Math.max(count, cellX.length * 2);
+            cellX = new int[capacity];
+            cellY = new int[capacity];
+            next = new int[capacity];
+        }
+        int buckets = Integer.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+        if (heads.length != buckets) {
+            heads = new int[buckets];
+            mask = buckets - 1;
+        }
+        Arrays.fill(heads, -1);
+
+        for (int i = 0; i < count; i++) {
+            cellX[i] = (int) Math.floor(xs[i] / cellSize);
+            cellY[i] = (int) Math.floor(ys[i] / cellSize);
+            int b = bucket(cellX[i], cellY[i]);
+            next[i] = heads[b];
+            heads[b] = i;
+        }
+    }
+
+    private int bucket(int cx, int cy) {
+        int h = cx * 0x9E3779B1 + cy * 0x85EBCA6B;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Growable list of encoded pairs, reused from sweep to sweep. */
+    static final class Pairs {
+        long[] pairs = new long[16];
+        int count;
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(long pair) {
+            if (count == pairs.length) {
+                pairs = Arrays.copyOf(pairs, count * 2);
+            }
+            pairs[count++] = pair;
+        }
+
+        long get(int index) {
+            return pairs[index];
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package manager;
+
+import java.util.Arrays;
+
+/**
+ * One slice [from, to) of the airborne aircraft in a conflict sweep. It tests the candidate
+ * pairs whose first aircraft lies in the slice and keeps those in conflict, in pair order.
+ * Slices only read the sweep arrays and write their own buffers, so they can be detected in
+ * parallel; consecutive slices' conflicts then concatenate into the order a single slice
+ * over all aircraft would produce. Buffers are reused from sweep to sweep.
+ */
+final class SweepRange {
+
+    int from;
+    int to;
+    int pairCount;   // candidates tested
+    int conflictCount;
+    long[] conflicts = new long[16];
+    double[] distances = new double[16];
+    double[] secondsToConflict = new double[16];
+
+    private final SpatialGrid.Pairs candidates = new SpatialGrid.Pairs();
+
+    /**
+     * Finds the conflicts of this slice: pairs closer than {@code maxDistance} now or, with
+     * a positive {@code horizon}, at their closest point of approach within it.
+     */
+    void detect(SpatialGrid grid, double[] xs, double[] ys, double[] vxs, double[] vys,
+                double maxDistance, double horizon) {
+        candidates.clear();
+        pairCount = grid.collectPairs(xs, ys, from, to, candidates);
+        conflictCount = 0;
+        for (int p = 0; p < pairCount; p++) {
+            long pair = candidates.get(p);
+            int i = SpatialGrid.first(pair);
+            int j = SpatialGrid.second(pair);
+            double dx = xs[j] - xs[i];
+            double dy = ys[j] - ys[i];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            double seconds = 0;
+            if (distance > maxDistance) {
+                if (horizon == 0) {
+                    continue;
+                }
+                double dvx = vxs[j] - vxs[i];
+                double dvy = vys[j] - vys[i];
+                seconds = ClosestApproach.time(dx, dy, dvx, dvy, horizon);
+                distance = ClosestApproach.distanceAt(dx, dy, dvx, dvy, seconds);
+                if (distance > maxDistance) {
+                    continue;
+                }
+            }
+            addConflict(pair, distance, seconds);
+        }
+    }
+
+    private void addConflict(long pair, double distance, double seconds) {
+        if (conflictCount == conflicts.length) {
+            int capacity = conflictCount * 2;
+            conflicts = Arrays.copyOf(conflicts, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            secondsToConflict = Arrays.copyOf(secondsToConflict, capacity);
+        }
+        conflicts[conflictCount] = pair;
+        distances[conflictCount] = distance;
+        secondsToConflict[conflictCount] = seconds;
+        conflictCount++;
+    }
+}
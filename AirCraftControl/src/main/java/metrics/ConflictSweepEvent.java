@@ -0,0 +1,42 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Timed over one {@code AirTrafficControl.checkForConflicts} sweep. */
+@Name("atc.ConflictSweep")
+@Label("Conflict Sweep")
+@Category({"Air Traffic Control", "Conflicts"})
+@Description("One pass of conflict detection over the airborne aircraft")
+public class ConflictSweepEvent extends Event {
+
+    @Label("Airborne Aircraft")
+    public int airborne;
+
+    @Label("Pairs Tested")
+    public int pairsTested;
+
+    @Label("Conflicts")
+    public int conflicts;
+
+    @Label("Conflicts Opened")
+    public int opened;
+
+    @Label("Conflicts Closed")
+    public int closed;
+
+    @Label("Open Conflicts")
+    public int open;
+
+    @Label("Conflict Clusters")
+    public int clusters;
+
+    @Label("Safe Distance")
+    public double safeDistance;
+
+    @Label("Lookahead Seconds")
+    public double lookaheadSeconds;
+}
@@ -0,0 +1,99 @@
+package metrics;
+
+/**
+ * Distribution of non-negative long values (latencies, counts per sweep, ...). Values are
+ * kept in log-linear buckets (about 3% precision) so percentiles can be read without storing
+ * every sample; negative values are recorded as 0.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKETS = 32;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private final long[] buckets = new long[LINEAR_LIMIT + (63 - 6) * SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    public synchronized void record(long value) {
+        value = Math.max(0, value);
+        buckets[bucketOf(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /** Adds every value recorded by {@code other} to this distribution. */
+    public void add(Histogram other) {
+        long[] otherBuckets;
+        long otherCount, otherTotal, otherMax;
+        synchronized (other) {
+            otherBuckets = other.buckets.clone();
+            otherCount = other.count;
+            otherTotal = other.total;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += otherBuckets[i];
+            }
+            count += otherCount;
+            total += otherTotal;
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100) of recorded values.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(max, upperBoundOf(i));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d",
+                count, getMean(), getPercentile(50), getPercentile(99), max);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= 6
+        int sub = (int) (value >>> (exponent - 5)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 6) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = 6 + (bucket - LINEAR_LIMIT) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 5)) - 1;
+    }
+}
@@ -0,0 +1,112 @@
+package metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges and histograms for the simulation. Instrumented classes look their
+ * metrics up once (typically into a static field) and update them on the hot path; a counter
+ * is a {@link LongAdder}, a histogram a {@link Histogram}, a gauge is read only when the
+ * metrics are dumped. Names are dotted, lower case, with the unit last ({@code atc.sweep.micros}).
+ * <p>
+ * The shared registry can be read over JMX ({@link #registerMBean()}) and printed
+ * periodically by a {@link MetricsReporter}.
+ */
+public final class Metrics {
+
+    public static final String OBJECT_NAME = "atc:type=Metrics";
+
+    private static final Metrics SHARED = new Metrics();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static Metrics get() {
+        return SHARED;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /** Registers a gauge, replacing any earlier one of the same name. */
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    public Map<String, Double> gaugeValues() {
+        Map<String, Double> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+        return values;
+    }
+
+    public Map<String, Histogram> histograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /** Prints every metric, one per line, sorted by name within each kind. */
+    public void dump(PrintStream out) {
+        counterValues().forEach((name, value) -> out.println("counter   " + name + " = " + value));
+        gaugeValues().forEach((name, value) -> out.printf("gauge     %s = %.2f%n", name, value));
+        histograms().forEach((name, histogram) -> out.println("histogram " + name + ": " + histogram));
+    }
+
+    /**
+     * Exposes the shared registry as the platform MBean {@value #OBJECT_NAME}. Does nothing if
+     * it is already registered.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBeanImpl(SHARED),
+                    new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by an earlier run in this JVM
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class MetricsMXBeanImpl implements MetricsMXBean {
+        private final Metrics metrics;
+
+        MetricsMXBeanImpl(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return metrics.counterValues();
+        }
+
+        @Override
+        public Map<String, Double> getGauges() {
+            return metrics.gaugeValues();
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            Map<String, String> values = new TreeMap<>();
+            metrics.histograms().forEach((name, histogram) -> values.put(name, histogram.toString()));
+            return values;
+        }
+    }
+}
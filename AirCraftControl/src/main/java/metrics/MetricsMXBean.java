@@ -0,0 +1,16 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}: current counter and gauge values, and a one-line summary
+ * (count, mean, p50, p99, max) per histogram.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Double> getGauges();
+
+    Map<String, String> getHistograms();
+}
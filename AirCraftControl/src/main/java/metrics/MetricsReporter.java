@@ -0,0 +1,50 @@
+package metrics;
+
+import simulation.SimulationClock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Prints a snapshot of all metrics every {@code intervalMillis} of simulated time until
+ * interrupted.
+ */
+public class MetricsReporter implements Runnable {
+
+    private final Metrics metrics;
+    private final SimulationClock clock;
+    private final long intervalMillis;
+    private final PrintStream out;
+
+    public MetricsReporter(Metrics metrics, SimulationClock clock, long intervalMillis, PrintStream out) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Metrics interval must be positive: " + intervalMillis);
+        }
+        this.metrics = metrics;
+        this.clock = clock;
+        this.intervalMillis = intervalMillis;
+        this.out = out;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                clock.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            report();
+        }
+    }
+
+    public void report() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream buffer = new PrintStream(bytes);
+        buffer.printf("=== Metrics at %.1f s ===%n", clock.currentTimeMillis() / 1000.0);
+        metrics.dump(buffer);
+        buffer.flush();
+        out.print(bytes); // one write, so the block is not interleaved with other output
+    }
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("atc.RouteChange")
+@Label("Route Change")
+@Category({"Air Traffic Control", "Aircraft"})
+@Description("An aircraft was rerouted around a conflict or reverted to its original route")
+public class RouteChangeEvent extends Event {
+
+    @Label("Aircraft")
+    public int aircraftId;
+
+    @Label("Revert")
+    public boolean revert;
+
+    @Label("X")
+    public double x;
+
+    @Label("Y")
+    public double y;
+}
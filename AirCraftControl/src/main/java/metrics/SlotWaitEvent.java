@@ -0,0 +1,34 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("atc.SlotWait")
+@Label("Slot Wait")
+@Category({"Air Traffic Control", "Airport"})
+@Description("A takeoff or landing request was granted a slot")
+public class SlotWaitEvent extends Event {
+
+    @Label("Airport")
+    public int airportId;
+
+    @Label("Aircraft")
+    public int aircraftId;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Slot")
+    public int slot;
+
+    @Label("Simulated Wait")
+    @Timespan(Timespan.MILLISECONDS)
+    public long waitMillis;
+
+    @Label("Free Slots Left")
+    public int freeSlots;
+}
@@ -0,0 +1,22 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("atc.TickJitter")
+@Label("Aircraft Tick Jitter")
+@Category({"Air Traffic Control", "Aircraft"})
+@Description("How late an aircraft thread woke up for its next position update")
+public class TickJitterEvent extends Event {
+
+    @Label("Aircraft")
+    public int aircraftId;
+
+    @Label("Simulated Lateness")
+    @Timespan(Timespan.MILLISECONDS)
+    public long latenessMillis;
+}
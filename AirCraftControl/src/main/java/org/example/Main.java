@@ -1,23 +1,297 @@
 package org.example;
 
 import aircraft.Aircraft;
+import aircraft.FleetPublisher;
+import aircraft.FleetState;
 import aircraft.Route;
 import airport.Airport;
+import checkpoint.Checkpoint;
+import events.EventLog;
+import events.EventSink;
+import events.Verbosity;
+import events.EventType;
+import feed.PositionFeed;
 import manager.AirTrafficControl;
+import metrics.Metrics;
+import metrics.MetricsReporter;
+import recording.FlightRecorder;
+import recording.FlightRecording;
+import recording.Replay;
+import scenario.Scenario;
+import shard.Shard;
+import simulation.SimulationClock;
+import simulation.SimulationEngine;
+import simulation.ThroughputReport;
+import simulation.VirtualClock;
 import ui.SimulationGUI;
 
 import javax.swing.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
+/**
+ * Runs the simulation, or replays a recording; see {@link Options} for the command line.
+ */
 public class Main {
 
+    // The simulated world a run starts from: built-in, loaded from a scenario or restored.
+    private record World(SimulationClock clock, FleetState fleet, List<Airport> airports, Scenario scenario,
+                         Checkpoint checkpoint) {
+    }
+
     public static void main(String[] args) {
+        Options options = Options.parse(args);
+        if (options.verbosity != null) {
+            EventLog.get().setVerbosity(options.verbosity);
+        }
+        if (options.replayFile != null) {
+            runReplay(options.replayFile, options.speed, options.headless);
+            return;
+        }
+        if (!options.reconcile()) {
+            return;
+        }
+        World world = createWorld(options);
+        if (world != null) {
+            run(options, world);
+        }
+    }
 
-        Airport airport1 = new Airport(1, 0, 2, 5);
-        Airport airport2 = new Airport(2, 10000, 2, 5);
-        Airport airport3 = new Airport(3, 20000, 2, 5);
-        Airport airport4 = new Airport(4, 30000, 1, 5);
+    private static void run(Options options, World world) {
+        SimulationClock clock = world.clock();
+        FleetState fleet = world.fleet();
+        List<Airport> airportList = world.airports();
+        Scenario scenario = world.scenario();
+        List<Aircraft> aircraftList = fleet.aircraft();
+
+       //create and start aircraft control
+        double safeDistanceThreshold = 3000;   // if two aircraft are within 3000 units=>CONFLICT
+
+        AirTrafficControl atc = new AirTrafficControl(aircraftList, safeDistanceThreshold,
+                options.checkIntervalMillis, clock);
+        atc.setLookaheadSeconds(options.lookaheadSeconds);
+        atc.setParallelism(options.atcThreads);
+
+        SimulationEngine engine = options.threaded ? null
+                : new SimulationEngine(fleet, atc, 1000, options.workers, clock);
+        if (scenario != null) {
+            engine.setFlightSource(scenario);
+        }
+        if (world.checkpoint() != null) {
+            world.checkpoint().restore(atc);
+            world.checkpoint().restore(engine);
+        }
+
+        Shard shard = null;
+        if (options.isSharded()) {
+            shard = startShard(options, world, safeDistanceThreshold);
+            if (shard == null) {
+                return;
+            }
+            shard.attach(engine, atc);
+        }
+
+        if (!options.headless) {
+            SwingUtilities.invokeLater(() -> {
+                SimulationGUI gui = new SimulationGUI(aircraftList, airportList, clock);
+                atc.setGUI(gui);  //to display warnings
+                if (engine != null) {
+                    gui.setFleetSource(engine.getPublisher());
+                }
+            });
+        }
+
+        FlightRecorder recorder = null;
+        PositionFeed feed = null;
+        Thread frameSampler = null;
+        FleetPublisher frames = engine != null ? engine.getPublisher() : new FleetPublisher();
+        if (options.recordFile != null) {
+            try {
+                recorder = new FlightRecorder(options.recordFile, airportList);
+            } catch (IOException e) {
+                System.out.println("Cannot record to " + options.recordFile + ": " + e.getMessage());
+                return;
+            }
+            frames.addListener(recorder::record);
+        }
+        if (options.feedPort >= 0) {
+            try {
+                feed = new PositionFeed(new InetSocketAddress(options.feedPort));
+            } catch (IOException e) {
+                System.out.println("Cannot open the position feed on port " + options.feedPort + ": " + e.getMessage());
+                return;
+            }
+            frames.addListener(feed::publish);
+            System.out.println("Position feed listening on port " + feed.getPort() + ".");
+        }
+        if (recorder != null || feed != null) {
+            EventLog.get().setSink(EventSink.both(recorder, feed), Verbosity.INFO);
+            if (engine == null) {
+                frameSampler = startFrameSampler(aircraftList, frames, clock);
+            }
+        }
+
+        Metrics.registerMBean();
+        MetricsReporter metricsReporter = null;
+        Thread metricsThread = null;
+        if (options.metricsIntervalMillis > 0) {
+            metricsReporter = new MetricsReporter(Metrics.get(), clock, options.metricsIntervalMillis, System.out);
+            metricsThread = Thread.ofPlatform().name("MetricsReporter").daemon().start(metricsReporter);
+        }
+
+        long wallStart = System.nanoTime();
+        long simulationStart = clock.currentTimeMillis();
+        if (options.threaded) {
+            runThreaded(aircraftList, atc, options.virtual, clock, options.durationMillis);
+        } else {
+            runEngine(engine, clock, options.durationMillis);
+        }
+        if (options.headless) {
+            List<Airport> ownAirports = shard == null ? airportList : airportList.stream().filter(shard::owns).toList();
+            new ThroughputReport(engine, atc, ownAirports, System.nanoTime() - wallStart,
+                    clock.currentTimeMillis() - simulationStart).print(System.out);
+        }
+        if (metricsReporter != null) {
+            metricsThread.interrupt();
+            metricsReporter.report();
+        }
+        if (options.checkpointFile != null) {
+            writeCheckpoint(options.checkpointFile, world, atc, engine);
+        }
+        if (frameSampler != null) {
+            frameSampler.interrupt();
+        }
+        if (recorder != null || feed != null) {
+            EventLog.get().flush();
+            EventLog.get().setSink(null, Verbosity.OFF);
+        }
+        close(feed);
+        if (close(recorder)) {
+            System.out.println("Recorded " + recorder.getFrameCount() + " frames and " + recorder.getEventCount()
+                    + " events to " + options.recordFile);
+        }
+        close(shard);
+        close(scenario);
+    }
+
+    /**
+     * Restores the checkpoint, loads the scenario or builds the default network, on the
+     * options' clock (a restored checkpoint brings its own).
+     *
+     * @return null if the run cannot start, after saying why
+     */
+    private static World createWorld(Options options) {
+        SimulationClock clock = options.clock;
+        if (options.restoreFile != null) {
+            long readStart = System.nanoTime();
+            Checkpoint checkpoint;
+            Scenario scenario = null;
+            try {
+                checkpoint = Checkpoint.read(options.restoreFile, clock);
+                if (options.scenarioFile != null) {
+                    scenario = checkpoint.resumeScenario(options.scenarioFile);
+                } else if (checkpoint.hasScenario()) {
+                    System.out.println("The checkpoint was taken with a scenario; pass --scenario=FILE to keep releasing its flights.");
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cannot restore checkpoint: " + e.getMessage());
+                return null;
+            }
+            World world = new World(checkpoint.getClock(), checkpoint.getFleet(), checkpoint.getAirports(), scenario,
+                    checkpoint);
+            System.out.println(String.format(Locale.ROOT, "Restored %s: %d airports, %d aircraft at %.1f s, in %.0f ms.",
+                    options.restoreFile, world.airports().size(), world.fleet().size(),
+                    world.clock().currentTimeMillis() / 1000.0, (System.nanoTime() - readStart) / 1e6));
+            return world;
+        }
+        FleetState fleet = new FleetState();
+        if (options.scenarioFile != null) {
+            Scenario scenario;
+            try {
+                scenario = Scenario.open(options.scenarioFile, fleet, clock);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cannot load scenario: " + e.getMessage());
+                return null;
+            }
+            System.out.println("Scenario " + options.scenarioFile + ": " + scenario.getAirports().size()
+                    + " airports, flights released on schedule.");
+            return new World(clock, fleet, scenario.getAirports(), scenario, null);
+        }
+        return new World(clock, fleet, createDefaultScenario(fleet, clock), null, null);
+    }
+
+    /**
+     * Opens this process's shard and connects it to its peers. Aircraft departing from
+     * another shard's airports are handed off to it.
+     *
+     * @return null if the shard cannot start, after saying why
+     */
+    private static Shard startShard(Options options, World world, double safeDistanceThreshold) {
+        Shard shard = null;
+        try {
+            shard = new Shard(options.shardIndex, options.shardBounds, safeDistanceThreshold, world.fleet(),
+                    world.airports(), world.clock());
+            shard.setReceiveTimeout(options.shardTimeoutMillis);
+            if (world.scenario() != null) {
+                world.scenario().setOriginFilter(shard::owns);
+            }
+            for (Aircraft aircraft : world.fleet().aircraft()) {
+                if (!shard.owns(aircraft.getRoute().getFromAirport())) {
+                    aircraft.handOff(); // departs from another shard's airport
+                }
+            }
+            shard.connect(Shard.parsePeers(options.shardPeers), 30000);
+            return shard;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Cannot start shard " + options.shardIndex + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeCheckpoint(Path file, World world, AirTrafficControl atc, SimulationEngine engine) {
+        SimulationClock clock = world.clock();
+        long writeStart = System.nanoTime();
+        try {
+            long bytes = Checkpoint.write(file, clock, world.airports(), world.fleet(), atc, engine, world.scenario());
+            System.out.println(String.format(Locale.ROOT, "Checkpoint of %d aircraft at %.1f s written to %s: %d KB in %.0f ms.",
+                    world.fleet().size(), clock.currentTimeMillis() / 1000.0, file, bytes / 1024,
+                    (System.nanoTime() - writeStart) / 1e6));
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("Cannot write checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes {@code closeable} unless it is null, printing the stack trace if that fails.
+     *
+     * @return true if it was open and closed cleanly
+     */
+    private static boolean close(Closeable closeable) {
+        if (closeable == null) {
+            return false;
+        }
+        try {
+            closeable.close();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * The built-in network: four airports and six aircraft, one route each.
+     */
+    private static List<Airport> createDefaultScenario(FleetState fleet, SimulationClock clock) {
+        Airport airport1 = new Airport(1, 0, 2, 5, clock);
+        Airport airport2 = new Airport(2, 10000, 2, 5, clock);
+        Airport airport3 = new Airport(3, 20000, 2, 5, clock);
+        Airport airport4 = new Airport(4, 30000, 1, 5, clock);
 
         System.out.println("Airports created:");
         System.out.println(airport1);
@@ -25,12 +299,12 @@ public class Main {
         System.out.println(airport3);
         System.out.println(airport4);
 
-        Aircraft aircraft1 = new Aircraft(1, 1000);
-        Aircraft aircraft2 = new Aircraft(2, 800);
-        Aircraft aircraft3 = new Aircraft(3, 900);
-        Aircraft aircraft4 = new Aircraft(4, 850);
-        Aircraft aircraft5 = new Aircraft(5, 1000);
-        Aircraft aircraft6 = new Aircraft(6, 1200);
+        Aircraft aircraft1 = fleet.add(1, 1000, clock);
+        Aircraft aircraft2 = fleet.add(2, 800, clock);
+        Aircraft aircraft3 = fleet.add(3, 900, clock);
+        Aircraft aircraft4 = fleet.add(4, 850, clock);
+        Aircraft aircraft5 = fleet.add(5, 1000, clock);
+        Aircraft aircraft6 = fleet.add(6, 1200, clock);
 
         // assign routes
         aircraft1.assignRoute(new Route(airport1, airport2));
@@ -41,64 +315,132 @@ public class Main {
         aircraft6.assignRoute(new Route(airport4, airport1));
         System.out.println("Aircraft assigned to routes.");
 
-
-        List<Aircraft> aircraftList = new ArrayList<>();
-        aircraftList.add(aircraft1);
-        aircraftList.add(aircraft2);
-        aircraftList.add(aircraft3);
-        aircraftList.add(aircraft4);
-        aircraftList.add(aircraft5);
-        aircraftList.add(aircraft6);
-
-       //create and start aircraft control
-        double safeDistanceThreshold = 3000;   // if two aircraft are within 3000 units=>CONFLICT
-        int checkIntervalMillis = 1000;        // check every second.
-
-        AirTrafficControl atc = new AirTrafficControl(aircraftList, safeDistanceThreshold, checkIntervalMillis);
-        atc.start();
-
         List<Airport> airportList = new ArrayList<>();
         airportList.add(airport1);
         airportList.add(airport2);
         airportList.add(airport3);
         airportList.add(airport4);
+        return airportList;
+    }
+
+    /**
+     * Publishes a frame of the whole fleet every simulated second while aircraft run on their
+     * own threads (the engine publishes its frames itself).
+     */
+    private static Thread startFrameSampler(List<Aircraft> aircraftList, FleetPublisher publisher,
+                                            SimulationClock clock) {
+        return Thread.ofPlatform().name("FrameSampler").daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                publisher.publish(aircraftList, clock.currentTimeMillis());
+                try {
+                    clock.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private static void runReplay(Path file, double speed, boolean headless) {
+        if (headless) {
+            System.out.println("Replay needs a display.");
+            return;
+        }
+        FlightRecording recording;
+        try {
+            recording = FlightRecording.open(file);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Cannot open recording: " + e.getMessage());
+            return;
+        }
+        FleetPublisher publisher = new FleetPublisher();
+        Replay replay = new Replay(recording, publisher);
+        replay.setSpeed(speed);
+
+        List<Airport> airportList = new ArrayList<>();
+        for (int i = 0; i < recording.getAirportCount(); i++) {
+            airportList.add(new Airport(recording.getAirportId(i), recording.getAirportX(i),
+                    recording.getAirportSlots(i), 0, replay));
+        }
+        System.out.println("Replaying " + file + ": " + recording.getFrameCount() + " frames, "
+                + recording.getEventCount() + " events, " + (recording.getEndMillis() - recording.getStartMillis()) / 1000 + " s.");
 
         SwingUtilities.invokeLater(() -> {
-            SimulationGUI gui = new SimulationGUI(aircraftList, airportList);
-            atc.setGUI(gui);  //to display warnings
+            SimulationGUI gui = new SimulationGUI(List.of(), airportList, replay);
+            gui.setFleetSource(publisher);
+            replay.setEventSink((type, aircraftId, arg1, arg2, x, y, timeMillis) -> {
+                String text = type.format(aircraftId, arg1, arg2, x, y);
+                System.out.println(text);
+                if (type.getLevel() == Verbosity.WARN || type == EventType.REROUTE) {
+                    gui.displayWarning(text);
+                }
+            });
+            gui.bindKey("SPACE", () -> replay.setPaused(!replay.isPaused()));
+            gui.bindKey("LEFT", () -> replay.seekBy(-10000));
+            gui.bindKey("RIGHT", () -> replay.seekBy(10000));
+            gui.bindKey("UP", () -> replay.setSpeed(replay.getSpeed() * 2));
+            gui.bindKey("DOWN", () -> replay.setSpeed(replay.getSpeed() / 2));
+            Thread.ofPlatform().name("Replay").start(replay);
         });
+    }
+
+    private static void runEngine(SimulationEngine engine, SimulationClock clock, long durationMillis) {
+        if (clock instanceof VirtualClock) {
+            engine.runUntil(clock.currentTimeMillis() + durationMillis); // as fast as possible
+            EventLog.get().flush();
+            System.out.println("Simulation complete after " + engine.getTickCount() + " ticks.");
+            return;
+        }
+        engine.start();
 
+        try {
+            clock.sleep(durationMillis);
+            engine.stop();
+            EventLog.get().flush();
+            System.out.println("Simulation complete.");
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        System.out.println("Simulation engine has terminated. Main thread exiting.");
+    }
 
-        aircraft1.start();
-        aircraft2.start();
-        aircraft3.start();
-        aircraft4.start();
-        aircraft5.start();
-        aircraft6.start();
+    private static void runThreaded(List<Aircraft> aircraftList, AirTrafficControl atc, boolean virtual,
+                                    SimulationClock clock, long durationMillis) {
+        // Virtual threads cost only heap while an aircraft sleeps or waits for a slot.
+        Thread.Builder builder = virtual ? Thread.ofVirtual() : Thread.ofPlatform();
+
+        Thread atcThread = builder.name("AirTrafficControl").start(atc);
+
+        List<Thread> aircraftThreads = new ArrayList<>();
+        for (Aircraft aircraft : aircraftList) {
+            aircraftThreads.add(builder.name("Aircraft-" + aircraft.getAircraftId()).start(aircraft));
+        }
 
         try {
-            Thread.sleep(60000); // 60 seconds simulation
+            clock.sleep(durationMillis);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
 
+        EventLog.get().flush();
         System.out.println("Simulation complete.");
 
 
-        for (Aircraft aircraft : aircraftList) {
-            aircraft.interrupt();
+        for (Thread thread : aircraftThreads) {
+            thread.interrupt();
         }
-        atc.interrupt();
+        atcThread.interrupt();
 
-        for (Aircraft aircraft : aircraftList) {
+        for (Thread thread : aircraftThreads) {
             try {
-                aircraft.join();
+                thread.join();
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
         try {
-            atc.join();
+            atcThread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
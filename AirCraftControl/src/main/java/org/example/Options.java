@@ -0,0 +1,161 @@
+package org.example;
+
+import events.Verbosity;
+import shard.Shard;
+import simulation.ScaledClock;
+import simulation.SimulationClock;
+import simulation.VirtualClock;
+
+import java.awt.GraphicsEnvironment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line options of {@link Main}:
+ * <ul>
+ *   <li>{@code --threads} runs one thread per aircraft ({@code --virtual-threads} on virtual
+ *       threads); the default is the tick engine ({@code --workers=N} to parallelise).</li>
+ *   <li>{@code --speed=N} runs N times faster than real time, {@code --fast} runs in virtual
+ *       time (engine only).</li>
+ *   <li>{@code --verbosity=off|warn|info|debug} selects how much of the event log is printed.</li>
+ *   <li>{@code --lookahead=S} predicts conflicts S seconds ahead, so {@code --atc-interval=MS}
+ *       can be longer; {@code --atc-threads=N} runs conflict detection on N ForkJoin threads
+ *       for large fleets.</li>
+ *   <li>{@code --shard=K --shard-bounds=X1,X2,.. --shard-peers=HOST:PORT,..} runs shard K of an
+ *       airspace split at the given x coordinates, one process per shard (see
+ *       scripts/run-shards.sh); {@code --shard-timeout=S} gives up a neighbour that sends
+ *       nothing for S wall-clock seconds (default 10).</li>
+ *   <li>{@code --headless} skips the GUI (implied without a display) and prints a throughput
+ *       report.</li>
+ *   <li>{@code --scenario=FILE} loads airports and a flight schedule instead of the built-in
+ *       fleet; {@code --duration=S} sets how many simulated seconds to run (default 60).</li>
+ *   <li>{@code --record=FILE} writes a binary flight recording; {@code --replay=FILE} plays one
+ *       back in the GUI (at {@code --speed=N}; arrows seek and change speed, space pauses).</li>
+ *   <li>{@code --metrics=S} prints all metrics every S simulated seconds and at the end; they
+ *       are always readable over JMX as atc:type=Metrics.</li>
+ *   <li>{@code --feed=PORT} streams positions and events to TCP clients such as
+ *       feed.FeedClient.</li>
+ *   <li>{@code --checkpoint=FILE} saves the whole simulation state when the run ends;
+ *       {@code --restore=FILE} resumes from one (with the same {@code --scenario}, if it had
+ *       one) for another {@code --duration}.</li>
+ * </ul>
+ */
+final class Options {
+
+    boolean headless = GraphicsEnvironment.isHeadless();
+    boolean threaded = false;
+    boolean virtual = false;
+    int workers = 1;
+    double lookaheadSeconds = 0;
+    int atcThreads = 1;
+    int checkIntervalMillis = 1000;        // check every second.
+    long durationMillis = 60000;
+    Path scenarioFile;
+    Path recordFile;
+    Path replayFile;
+    double speed = 1;
+    long metricsIntervalMillis = 0;
+    int shardIndex = -1;
+    double[] shardBounds = new double[0];
+    String shardPeers;
+    long shardTimeoutMillis = 10000;
+    int feedPort = -1;
+    Path checkpointFile;
+    Path restoreFile;
+    Verbosity verbosity; // null: the event log's default
+    SimulationClock clock = SimulationClock.realTime();
+    private final List<String> unknown = new ArrayList<>();
+
+    private Options() {
+    }
+
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg : arg.substring(0, equals + 1);
+            String value = arg.substring(name.length());
+            switch (name) {
+                case "--threads" -> options.threaded = true;
+                case "--virtual-threads" -> {
+                    options.threaded = true;
+                    options.virtual = true;
+                }
+                case "--lookahead=" -> options.lookaheadSeconds = Double.parseDouble(value);
+                case "--atc-threads=" -> options.atcThreads = Integer.parseInt(value);
+                case "--atc-interval=" -> options.checkIntervalMillis = Integer.parseInt(value);
+                case "--workers=" -> options.workers = Integer.parseInt(value);
+                case "--speed=" -> {
+                    options.speed = Double.parseDouble(value);
+                    options.clock = new ScaledClock(options.speed);
+                }
+                case "--scenario=" -> options.scenarioFile = Path.of(value);
+                case "--duration=" -> options.durationMillis = seconds(value);
+                case "--record=" -> options.recordFile = Path.of(value);
+                case "--replay=" -> options.replayFile = Path.of(value);
+                case "--metrics=" -> options.metricsIntervalMillis = seconds(value);
+                case "--shard=" -> options.shardIndex = Integer.parseInt(value);
+                case "--shard-bounds=" -> options.shardBounds = Shard.parseBounds(value);
+                case "--shard-peers=" -> options.shardPeers = value;
+                case "--shard-timeout=" -> options.shardTimeoutMillis = seconds(value);
+                case "--feed=" -> options.feedPort = Integer.parseInt(value);
+                case "--checkpoint=" -> options.checkpointFile = Path.of(value);
+                case "--restore=" -> options.restoreFile = Path.of(value);
+                case "--headless" -> options.headless = true;
+                case "--fast" -> options.clock = new VirtualClock();
+                case "--verbosity=" -> options.verbosity = Verbosity.valueOf(value.toUpperCase());
+                default -> options.unknown.add(arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Reports unknown options and drops {@code --threads} where only the tick engine will do,
+     * saying so.
+     *
+     * @return false if an option is unknown or the options cannot run together at all
+     */
+    boolean reconcile() {
+        for (String arg : unknown) {
+            System.out.println("Unknown option: " + arg);
+        }
+        if (!unknown.isEmpty()) {
+            return false;
+        }
+        if (threaded && clock instanceof VirtualClock) {
+            System.out.println("Virtual time needs the tick engine; ignoring --threads.");
+            threaded = false;
+        }
+        if (threaded && scenarioFile != null) {
+            System.out.println("Scheduled flights need the tick engine; ignoring --threads.");
+            threaded = false;
+        }
+        if (threaded && isSharded()) {
+            System.out.println("Sharding needs the tick engine; ignoring --threads.");
+            threaded = false;
+        }
+        if (threaded && (checkpointFile != null || restoreFile != null)) {
+            System.out.println("Checkpoints need the tick engine; ignoring --threads.");
+            threaded = false;
+        }
+        if (isSharded() && (checkpointFile != null || restoreFile != null)) {
+            System.out.println("A shard cannot be checkpointed on its own.");
+            return false;
+        }
+        if (isSharded() && shardPeers == null) {
+            System.out.println("--shard needs --shard-peers.");
+            return false;
+        }
+        return true;
+    }
+
+    boolean isSharded() {
+        return shardIndex >= 0;
+    }
+
+    private static long seconds(String value) {
+        return Math.round(Double.parseDouble(value) * 1000);
+    }
+}
@@ -0,0 +1,146 @@
+package recording;
+
+import aircraft.FleetSnapshot;
+import airport.Airport;
+import events.EventSink;
+import events.EventType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends fleet frames and events to a binary file through a memory-mapped window, so
+ * recording costs a few buffer writes per record instead of formatting text.
+ * <p>
+ * The file is a sequence of fixed-size segments, each mapped in turn; a record never crosses a
+ * segment boundary, the unused tail of a segment stays zero. The first segment starts with a
+ * header: magic, version, segment size and the airports (id, x, slot count). Records are
+ * <ul>
+ *   <li>frame: tag, epoch, time, count, then per aircraft id, x, y, vx, vy, flags</li>
+ *   <li>event: tag, type, aircraft id, two int arguments, x, y, time</li>
+ * </ul>
+ * Frames are passed in by a {@link aircraft.FleetPublisher} listener, events by the
+ * {@link events.EventLog} as its sink; both may arrive on different threads.
+ */
+public class FlightRecorder implements EventSink, Closeable {
+
+    static final int MAGIC = 0x41544352; // "ATCR"
+    static final int VERSION = 1;
+    static final int SEGMENT_SIZE = 64 << 20;
+
+    static final byte PADDING = 0; // rest of the segment is unused
+    static final byte FRAME = 1;
+    static final byte EVENT = 2;
+
+    static final int FRAME_HEADER_BYTES = 1 + 8 + 8 + 4;
+    static final int FRAME_ENTRY_BYTES = 4 + 4 * 8 + 1;
+    static final int EVENT_BYTES = 1 + 4 * 4 + 2 * 8 + 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long frameCount;
+    private long eventCount;
+    private boolean closed;
+
+    public FlightRecorder(Path file, List<Airport> airports) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapSegment(0);
+        int headerBytes = 4 * 4 + airports.size() * (4 + 8 + 4);
+        if (headerBytes > SEGMENT_SIZE) {
+            channel.close();
+            throw new IllegalArgumentException("Too many airports to record: " + airports.size());
+        }
+        segment.putInt(MAGIC).putInt(VERSION).putInt(SEGMENT_SIZE).putInt(airports.size());
+        for (Airport airport : airports) {
+            segment.putInt(airport.getId()).putDouble(airport.getX()).putInt(airport.getSlots().size());
+        }
+    }
+
+    /** Appends one frame; meant to be registered with {@code FleetPublisher.addListener}. */
+    public synchronized void record(FleetSnapshot frame) {
+        if (closed) {
+            return;
+        }
+        int size = frame.size();
+        reserve(FRAME_HEADER_BYTES + (long) size * FRAME_ENTRY_BYTES);
+        segment.put(FRAME).putLong(frame.getEpoch()).putLong(frame.getTimeMillis()).putInt(size);
+        for (int i = 0; i < size; i++) {
+            segment.putInt(frame.getAircraftId(i))
+                    .putDouble(frame.getX(i)).putDouble(frame.getY(i))
+                    .putDouble(frame.getVelocityX(i)).putDouble(frame.getVelocityY(i))
+                    .put(frame.getFlags(i));
+        }
+        frameCount++;
+    }
+
+    @Override
+    public synchronized void onEvent(EventType type, int aircraftId, int arg1, int arg2, double x, double y,
+                                     long timeMillis) {
+        if (closed) {
+            return;
+        }
+        reserve(EVENT_BYTES);
+        segment.put(EVENT).putInt(type.ordinal()).putInt(aircraftId).putInt(arg1).putInt(arg2)
+                .putDouble(x).putDouble(y).putLong(timeMillis);
+        eventCount++;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Flushes the mapped data and cuts the file down to what was written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long end = segmentStart + segment.position();
+        segment.force();
+        segment = null;
+        try {
+            channel.truncate(end);
+        } catch (IOException e) {
+            // Some platforms refuse while the mapping is alive; readers stop at the zero tail anyway.
+        }
+        channel.close();
+    }
+
+    private void reserve(long bytes) {
+        if (bytes > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Record of " + bytes + " bytes does not fit in a recording segment");
+        }
+        if (segment.remaining() < bytes) {
+            segment.force();
+            try {
+                mapSegment(segmentStart + SEGMENT_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to extend recording " + file, e);
+            }
+        }
+    }
+
+    private void mapSegment(long start) throws IOException {
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_SIZE);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,260 @@
+package recording;
+
+import aircraft.FleetSnapshot;
+import events.EventType;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read side of a {@link FlightRecorder} file. Opening maps the file read-only and indexes it
+ * (frame offsets and times, all events); frames are decoded only when asked for, so seeking
+ * in a long recording is a binary search plus one decode.
+ */
+public class FlightRecording {
+
+    private final MappedByteBuffer[] segments;
+    private final int segmentSize;
+
+    private final int[] airportIds;
+    private final double[] airportXs;
+    private final int[] airportSlots;
+
+    private long[] frameOffsets = new long[64];
+    private long[] frameTimes = new long[64];
+    private int frameCount;
+
+    // Events, sorted by time (they may be written slightly out of order relative to frames).
+    private int[] eventTypes = new int[64];
+    private int[] eventAircraft = new int[64];
+    private int[] eventArgs1 = new int[64];
+    private int[] eventArgs2 = new int[64];
+    private double[] eventXs = new double[64];
+    private double[] eventYs = new double[64];
+    private long[] eventTimes = new long[64];
+    private int eventCount;
+
+    private FlightRecording(MappedByteBuffer[] segments, int segmentSize, int[] airportIds, double[] airportXs,
+                            int[] airportSlots) {
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.airportIds = airportIds;
+        this.airportXs = airportXs;
+        this.airportSlots = airportSlots;
+    }
+
+    public static FlightRecording open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16) {
+                throw new IllegalArgumentException(file + " is not a flight recording");
+            }
+            MappedByteBuffer first = map(channel, 0, Math.min(size, FlightRecorder.SEGMENT_SIZE));
+            if (first.getInt() != FlightRecorder.MAGIC) {
+                throw new IllegalArgumentException(file + " is not a flight recording");
+            }
+            int version = first.getInt();
+            if (version != FlightRecorder.VERSION) {
+                throw new IllegalArgumentException(file + " has unsupported recording version " + version);
+            }
+            int segmentSize = first.getInt();
+            int segmentCount = (int) ((size + segmentSize - 1) / segmentSize);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = (long) i * segmentSize;
+                segments[i] = map(channel, start, Math.min(segmentSize, size - start));
+            }
+
+            int airports = first.getInt();
+            int[] ids = new int[airports];
+            double[] xs = new double[airports];
+            int[] slots = new int[airports];
+            for (int i = 0; i < airports; i++) {
+                ids[i] = first.getInt();
+                xs[i] = first.getDouble();
+                slots[i] = first.getInt();
+            }
+            FlightRecording recording = new FlightRecording(segments, segmentSize, ids, xs, slots);
+            recording.index(first.position());
+            return recording;
+        }
+    }
+
+    public int getAirportCount() { return airportIds.length; }
+    public int getAirportId(int index) { return airportIds[index]; }
+    public double getAirportX(int index) { return airportXs[index]; }
+    public int getAirportSlots(int index) { return airportSlots[index]; }
+
+    public int getFrameCount() { return frameCount; }
+    public long getFrameTime(int index) { return frameTimes[index]; }
+    public long getStartMillis() { return frameCount == 0 ? 0 : frameTimes[0]; }
+    public long getEndMillis() { return frameCount == 0 ? 0 : frameTimes[frameCount - 1]; }
+
+    /**
+     * Index of the last frame recorded at or before {@code timeMillis}, or 0 if the recording
+     * starts later; -1 if it has no frames.
+     */
+    public int frameAt(long timeMillis) {
+        if (frameCount == 0) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(frameTimes, 0, frameCount, timeMillis);
+        if (i < 0) {
+            i = -i - 2; // insertion point - 1
+        } else {
+            while (i + 1 < frameCount && frameTimes[i + 1] == timeMillis) {
+                i++;
+            }
+        }
+        return Math.max(0, i);
+    }
+
+    public FleetSnapshot getFrame(int index) {
+        long offset = frameOffsets[index];
+        MappedByteBuffer segment = segments[(int) (offset / segmentSize)].duplicate();
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.position((int) (offset % segmentSize) + 1);
+        long epoch = segment.getLong();
+        long time = segment.getLong();
+        int size = segment.getInt();
+        int[] ids = new int[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        double[] vxs = new double[size];
+        double[] vys = new double[size];
+        byte[] flags = new byte[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = segment.getInt();
+            xs[i] = segment.getDouble();
+            ys[i] = segment.getDouble();
+            vxs[i] = segment.getDouble();
+            vys[i] = segment.getDouble();
+            flags[i] = segment.get();
+        }
+        return FleetSnapshot.of(epoch, time, ids, xs, ys, vxs, vys, flags);
+    }
+
+    public int getEventCount() { return eventCount; }
+    public EventType getEventType(int index) { return EventType.ofOrdinal(eventTypes[index]); }
+    public int getEventAircraftId(int index) { return eventAircraft[index]; }
+    public int getEventArg1(int index) { return eventArgs1[index]; }
+    public int getEventArg2(int index) { return eventArgs2[index]; }
+    public double getEventX(int index) { return eventXs[index]; }
+    public double getEventY(int index) { return eventYs[index]; }
+    public long getEventTime(int index) { return eventTimes[index]; }
+
+    /** Index of the first event recorded after {@code timeMillis}. */
+    public int firstEventAfter(long timeMillis) {
+        int low = 0;
+        int high = eventCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (eventTimes[mid] <= timeMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void index(int headerEnd) {
+        for (int s = 0; s < segments.length; s++) {
+            MappedByteBuffer segment = segments[s];
+            segment.position(s == 0 ? headerEnd : 0);
+            while (segment.hasRemaining()) {
+                int recordStart = segment.position();
+                byte tag = segment.get();
+                if (tag == FlightRecorder.FRAME) {
+                    segment.getLong(); // epoch
+                    long time = segment.getLong();
+                    int size = segment.getInt();
+                    addFrame((long) s * segmentSize + recordStart, time);
+                    segment.position(segment.position() + size * FlightRecorder.FRAME_ENTRY_BYTES);
+                } else if (tag == FlightRecorder.EVENT) {
+                    addEvent(segment.getInt(), segment.getInt(), segment.getInt(), segment.getInt(),
+                            segment.getDouble(), segment.getDouble(), segment.getLong());
+                } else {
+                    break; // padding: the rest of this segment is empty
+                }
+            }
+        }
+        sortEvents();
+    }
+
+    private void addFrame(long offset, long time) {
+        if (frameCount == frameOffsets.length) {
+            frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+            frameTimes = Arrays.copyOf(frameTimes, frameCount * 2);
+        }
+        frameOffsets[frameCount] = offset;
+        frameTimes[frameCount] = time;
+        frameCount++;
+    }
+
+    private void addEvent(int type, int aircraftId, int arg1, int arg2, double x, double y, long time) {
+        if (eventCount == eventTimes.length) {
+            int capacity = eventCount * 2;
+            eventTypes = Arrays.copyOf(eventTypes, capacity);
+            eventAircraft = Arrays.copyOf(eventAircraft, capacity);
+            eventArgs1 = Arrays.copyOf(eventArgs1, capacity);
+            eventArgs2 = Arrays.copyOf(eventArgs2, capacity);
+            eventXs = Arrays.copyOf(eventXs, capacity);
+            eventYs = Arrays.copyOf(eventYs, capacity);
+            eventTimes = Arrays.copyOf(eventTimes, capacity);
+        }
+        eventTypes[eventCount] = type;
+        eventAircraft[eventCount] = aircraftId;
+        eventArgs1[eventCount] = arg1;
+        eventArgs2[eventCount] = arg2;
+        eventXs[eventCount] = x;
+        eventYs[eventCount] = y;
+        eventTimes[eventCount] = time;
+        eventCount++;
+    }
+
+    // Stable insertion sort: events arrive almost in order, a few records late at most.
+    private void sortEvents() {
+        for (int i = 1; i < eventCount; i++) {
+            long time = eventTimes[i];
+            if (eventTimes[i - 1] <= time) {
+                continue;
+            }
+            int type = eventTypes[i];
+            int aircraftId = eventAircraft[i];
+            int arg1 = eventArgs1[i];
+            int arg2 = eventArgs2[i];
+            double x = eventXs[i];
+            double y = eventYs[i];
+            int j = i - 1;
+            while (j >= 0 && eventTimes[j] > time) {
+                eventTypes[j + 1] = eventTypes[j];
+                eventAircraft[j + 1] = eventAircraft[j];
+                eventArgs1[j + 1] = eventArgs1[j];
+                eventArgs2[j + 1] = eventArgs2[j];
+                eventXs[j + 1] = eventXs[j];
+                eventYs[j + 1] = eventYs[j];
+                eventTimes[j + 1] = eventTimes[j];
+                j--;
+            }
+            eventTypes[j + 1] = type;
+            eventAircraft[j + 1] = aircraftId;
+            eventArgs1[j + 1] = arg1;
+            eventArgs2[j + 1] = arg2;
+            eventXs[j + 1] = x;
+            eventYs[j + 1] = y;
+            eventTimes[j + 1] = time;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,126 @@
+package recording;
+
+import aircraft.FleetPublisher;
+import events.EventSink;
+import simulation.SimulationClock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a {@link FlightRecording} back into a {@link FleetPublisher}, so a
+ * {@code SimulationGUI} can show it exactly as it shows a live run. Playback speed can be
+ * changed and the position moved at any time. Recorded events are handed to a sink as
+ * playback passes them; seeking skips the events in between.
+ * <p>
+ * The replay is also the GUI's clock: {@link #currentTimeMillis()} is the recorded time being
+ * shown.
+ */
+public class Replay implements SimulationClock, Runnable {
+
+    private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final FlightRecording recording;
+    private final FleetPublisher publisher;
+    private volatile EventSink events = (type, aircraftId, arg1, arg2, x, y, timeMillis) -> { };
+
+    private double position; // recorded time shown, fractional so slow playback still advances
+    private double speed = 1.0;
+    private boolean paused;
+    private int shownFrame = -1;
+    private int nextEvent;
+
+    public Replay(FlightRecording recording, FleetPublisher publisher) {
+        this.recording = recording;
+        this.publisher = publisher;
+        this.position = recording.getStartMillis();
+        this.nextEvent = recording.firstEventAfter(recording.getStartMillis() - 1);
+    }
+
+    /**
+     * Plays until interrupted. At the end of the recording playback holds the last frame.
+     */
+    @Override
+    public void run() {
+        long last = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            step(now - last);
+            last = now;
+            try {
+                TimeUnit.NANOSECONDS.sleep(STEP_NANOS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Receives the recorded events as playback reaches them. */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    /** Moves playback to {@code timeMillis}, clamped to the recording. */
+    public synchronized void seek(long timeMillis) {
+        position = Math.max(recording.getStartMillis(), Math.min(recording.getEndMillis(), timeMillis));
+        nextEvent = recording.firstEventAfter((long) position);
+        show();
+    }
+
+    public synchronized void seekBy(long deltaMillis) {
+        seek((long) position + deltaMillis);
+    }
+
+    public synchronized void setSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    public synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return (long) position;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(toWallNanos(millis));
+    }
+
+    @Override
+    public synchronized long toWallNanos(long millis) {
+        return (long) (TimeUnit.MILLISECONDS.toNanos(millis) / speed);
+    }
+
+    private synchronized void step(long wallNanos) {
+        if (!paused && position < recording.getEndMillis()) {
+            position = Math.min(recording.getEndMillis(), position + wallNanos * speed / 1_000_000);
+        }
+        while (nextEvent < recording.getEventCount() && recording.getEventTime(nextEvent) <= position) {
+            int i = nextEvent++;
+            events.onEvent(recording.getEventType(i), recording.getEventAircraftId(i), recording.getEventArg1(i),
+                    recording.getEventArg2(i), recording.getEventX(i), recording.getEventY(i), recording.getEventTime(i));
+        }
+        show();
+    }
+
+    private void show() {
+        int frame = recording.frameAt((long) position);
+        if (frame >= 0 && frame != shownFrame) {
+            shownFrame = frame;
+            publisher.publish(recording.getFrame(frame));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package scenario;
+
+import aircraft.Aircraft;
+import aircraft.FleetState;
+import aircraft.Route;
+import airport.Airport;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import simulation.FlightSource;
+import simulation.SimulationClock;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Airport network and flight schedule read from a CSV file:
+ * <pre>
+ * # comments and blank lines are ignored
+ * airport,&lt;id&gt;,&lt;x&gt;,&lt;slots&gt;,&lt;timeBetweenOps seconds&gt;
+ * flight,&lt;id&gt;,&lt;speed&gt;,&lt;from airport&gt;,&lt;to airport&gt;,&lt;departure seconds&gt;[,&lt;turnaround seconds&gt;]
+ * </pre>
+ * All airports come first and are loaded when the scenario is opened. Flights must be sorted
+ * by departure time (seconds after the scenario was opened); they stay in the file until
+ * {@link #release(long)} reaches their departure, so only one line is buffered however long
+ * the schedule is.
+ * <p>
+ * A flight whose id was already released is another leg of that airframe: it must depart
+ * from where the aircraft's last leg lands, at the same speed, and is flown by the same
+ * aircraft once it has landed and spent the turnaround on the ground (default 0). The fleet
+ * then grows with the number of airframes, not of flights.
+ */
+public class Scenario implements FlightSource, Closeable {
+
+    private final Path file;
+    private final BufferedReader reader;
+    private final FleetState fleet;
+    private final SimulationClock clock;
+    private final long startMillis;
+    private final Map<Integer, Airport> airportsById = new HashMap<>();
+    private final List<Airport> airports = new ArrayList<>();
+    private final Map<Integer, Aircraft> aircraftById = new HashMap<>();
+
+    private int lineNumber;
+    private String[] nextFlight; // parsed but not yet due
+    private int nextFlightLine;
+    private long nextDepartureMillis = Long.MAX_VALUE; // departure of nextFlight, or of the last one released
+    private long released;
+    private Predicate<Airport> departsHere = airport -> true;
+
+    private Scenario(Path file, FleetState fleet, SimulationClock clock, long startMillis) throws IOException {
+        this.file = file;
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.fleet = fleet;
+        this.clock = clock;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Opens {@code file}, reads its airports and positions the reader on the first flight.
+     * Released flights are added to {@code fleet}.
+     */
+    public static Scenario open(Path file, FleetState fleet, SimulationClock clock) throws IOException {
+        Scenario scenario = new Scenario(file, fleet, clock, clock.currentTimeMillis());
+        try {
+            scenario.readAirports();
+        } catch (IOException | RuntimeException e) {
+            scenario.close();
+            throw e;
+        }
+        return scenario;
+    }
+
+    /**
+     * Picks up {@code file} where a checkpointed run left it, as written by {@link #writeTo}:
+     * the airports and aircraft are the restored ones, and reading goes on from the first
+     * flight that had not been released.
+     */
+    public static Scenario resume(Path file, FleetState fleet, SimulationClock clock, List<Airport> airports,
+                                  CheckpointReader in) throws IOException {
+        long startMillis = in.getLong();
+        long released = in.getLong();
+        int nextLine = in.getInt();
+        Scenario scenario = new Scenario(file, fleet, clock, startMillis);
+        try {
+            for (Airport airport : airports) {
+                scenario.airportsById.put(airport.getId(), airport);
+                scenario.airports.add(airport);
+            }
+            for (Aircraft aircraft : fleet.aircraft()) {
+                scenario.aircraftById.put(aircraft.getAircraftId(), aircraft); // the latest airframe of an id
+            }
+            scenario.released = released;
+            if (nextLine > 0) {
+                while (scenario.lineNumber < nextLine - 1) {
+                    if (scenario.reader.readLine() == null) {
+                        throw scenario.error("ends before line " + nextLine + " the checkpoint resumes from");
+                    }
+                    scenario.lineNumber++;
+                }
+                scenario.readNextFlight();
+                if (scenario.nextFlightLine != nextLine) {
+                    throw scenario.error("expected the flight of line " + nextLine + "; not the checkpointed file?");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            scenario.close();
+            throw e;
+        }
+        return scenario;
+    }
+
+    /**
+     * Writes how far the schedule has been released: the line of the next flight (0 once
+     * all were) and the time departures count from. The file itself is not copied.
+     */
+    public void writeTo(CheckpointWriter out) throws IOException {
+        out.putLong(startMillis).putLong(released).putInt(nextFlight == null ? 0 : nextFlightLine);
+    }
+
+    public List<Airport> getAirports() {
+        return Collections.unmodifiableList(airports);
+    }
+
+    /** Number of flights released into the fleet so far. */
+    public long getReleasedCount() {
+        return released;
+    }
+
+    /**
+     * Only flights departing from airports accepted by {@code departsHere} are released; the
+     * others are read and skipped (e.g. they belong to another airspace shard).
+     */
+    public void setOriginFilter(Predicate<Airport> departsHere) {
+        this.departsHere = departsHere;
+    }
+
+    @Override
+    public int release(long nowMillis) {
+        int count = 0;
+        try {
+            while (nextFlight != null && nextDepartureMillis <= nowMillis) {
+                if (departsHere.test(airport(nextFlight[3]))) {
+                    addFlight(nextFlight);
+                    count++;
+                }
+                readNextFlight();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read flights from " + file, e);
+        }
+        released += count;
+        return count;
+    }
+
+    @Override
+    public long nextReleaseMillis() {
+        return nextFlight == null ? Long.MAX_VALUE : nextDepartureMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readAirports() throws IOException {
+        String[] fields;
+        while ((fields = nextRecord()) != null) {
+            if (fields[0].equals("flight")) {
+                acceptFlight(fields);
+                return;
+            }
+            if (!fields[0].equals("airport")) {
+                throw error("unknown record type '" + fields[0] + "'");
+            }
+            expectFields(fields, 5);
+            int id = parseInt(fields[1]);
+            Airport airport = new Airport(id, parseDouble(fields[2]), parseInt(fields[3]), parseInt(fields[4]), clock);
+            if (airportsById.putIfAbsent(id, airport) != null) {
+                throw error("duplicate airport " + id);
+            }
+            airports.add(airport);
+        }
+    }
+
+    private void readNextFlight() throws IOException {
+        nextFlight = null;
+        String[] fields = nextRecord();
+        if (fields != null) {
+            if (!fields[0].equals("flight")) {
+                throw error("expected a flight, airports must come before all flights");
+            }
+            acceptFlight(fields);
+        }
+    }
+
+    private void acceptFlight(String[] fields) {
+        if (fields.length != 7) {
+            expectFields(fields, 6);
+        }
+        long departure = startMillis + Math.round(parseDouble(fields[5]) * 1000);
+        if (departure < nextDepartureMillis && nextDepartureMillis != Long.MAX_VALUE) {
+            throw error("flights must be sorted by departure time");
+        }
+        Airport from = airport(fields[3]);
+        airport(fields[4]);
+        if (fields.length == 7 && parseDouble(fields[6]) < 0) {
+            throw error("turnaround must not be negative");
+        }
+        // Every earlier flight has been released by now, so a leg can be checked as it is read.
+        Aircraft aircraft = aircraftById.get(parseInt(fields[1]));
+        if (aircraft != null && !aircraft.isHandedOff()) {
+            if (aircraft.getFinalDestination() != from) {
+                throw error("aircraft " + fields[1] + " will be at airport "
+                        + aircraft.getFinalDestination().getId() + ", not " + from.getId());
+            }
+            if (aircraft.getSpeed() != parseInt(fields[2])) {
+                throw error("aircraft " + fields[1] + " flies at " + aircraft.getSpeed() + ", not " + fields[2]);
+            }
+        }
+        nextFlight = fields;
+        nextFlightLine = lineNumber;
+        nextDepartureMillis = departure;
+    }
+
+    private void addFlight(String[] fields) {
+        int id = parseInt(fields[1]);
+        int speed = parseInt(fields[2]);
+        Airport from = airport(fields[3]);
+        Airport to = airport(fields[4]);
+        Aircraft aircraft = aircraftById.get(id);
+        if (aircraft != null && !aircraft.isHandedOff()) {
+            long turnaround = fields.length == 7 ? Math.round(parseDouble(fields[6]) * 1000) : 0;
+            aircraft.addLeg(to, nextDepartureMillis, turnaround);
+            return;
+        }
+        aircraft = fleet.add(id, speed, clock);
+        aircraft.assignRoute(new Route(from, to));
+        aircraftById.put(id, aircraft);
+    }
+
+    private Airport airport(String field) {
+        Airport airport = airportsById.get(parseInt(field));
+        if (airport == null) {
+            throw error("unknown airport " + field);
+        }
+        return airport;
+    }
+
+    private String[] nextRecord() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].strip();
+            }
+            return fields;
+        }
+        return null;
+    }
+
+    private void expectFields(String[] fields, int count) {
+        if (fields.length != count) {
+            throw error("expected " + count + " fields, found " + fields.length);
+        }
+    }
+
+    private int parseInt(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw error("not an integer: '" + field + "'");
+        }
+    }
+
+    private double parseDouble(String field) {
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            throw error("not a number: '" + field + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(file + ":" + lineNumber + ": " + message);
+    }
+}
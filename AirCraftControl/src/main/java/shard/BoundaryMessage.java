@@ -0,0 +1,173 @@
+package shard;
+
+import aircraft.Aircraft;
+import aircraft.FleetSnapshot;
+import aircraft.Route;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * What one shard sends a neighbour each tick: the aircraft crossing into the neighbour's
+ * range (handoffs, with everything needed to fly them on) and the positions of its own
+ * aircraft in the boundary zone (ghosts, for conflict detection only).
+ */
+final class BoundaryMessage {
+
+    final long tick;
+
+    int handoffCount;
+    int[] handoffIds = new int[4];
+    int[] handoffSpeeds = new int[4];
+    int[] handoffFrom = new int[4];   // airport ids
+    int[] handoffTo = new int[4];
+    double[] handoffXs = new double[4];
+    double[] handoffYs = new double[4];
+    boolean[] handoffAvoiding = new boolean[4];
+    double[][] handoffWaypoints = new double[4][]; // x0, y0, x1, y1, ...
+    Aircraft[] handoffAircraft = new Aircraft[4];  // sender side only, not sent
+
+    int ghostCount;
+    int[] ghostIds = new int[16];
+    double[] ghostXs = new double[16];
+    double[] ghostYs = new double[16];
+    double[] ghostVxs = new double[16];
+    double[] ghostVys = new double[16];
+    byte[] ghostFlags = new byte[16];
+
+    BoundaryMessage(long tick) {
+        this.tick = tick;
+    }
+
+    void addHandoff(Aircraft aircraft, double x, double y) {
+        if (handoffCount == handoffIds.length) {
+            int capacity = handoffCount * 2;
+            handoffIds = Arrays.copyOf(handoffIds, capacity);
+            handoffSpeeds = Arrays.copyOf(handoffSpeeds, capacity);
+            handoffFrom = Arrays.copyOf(handoffFrom, capacity);
+            handoffTo = Arrays.copyOf(handoffTo, capacity);
+            handoffXs = Arrays.copyOf(handoffXs, capacity);
+            handoffYs = Arrays.copyOf(handoffYs, capacity);
+            handoffAvoiding = Arrays.copyOf(handoffAvoiding, capacity);
+            handoffWaypoints = Arrays.copyOf(handoffWaypoints, capacity);
+            handoffAircraft = Arrays.copyOf(handoffAircraft, capacity);
+        }
+        Route route = aircraft.getRoute();
+        double[] waypoints = new double[route.getWaypointCount() * 2];
+        for (int w = 0; w < route.getWaypointCount(); w++) {
+            waypoints[2 * w] = route.getWaypointX(w);
+            waypoints[2 * w + 1] = route.getWaypointY(w);
+        }
+        int h = handoffCount++;
+        handoffIds[h] = aircraft.getAircraftId();
+        handoffSpeeds[h] = aircraft.getSpeed();
+        handoffFrom[h] = route.getFromAirport().getId();
+        handoffTo[h] = route.getToAirport().getId();
+        handoffXs[h] = x;
+        handoffYs[h] = y;
+        handoffAvoiding[h] = aircraft.isInConflictAvoidance();
+        handoffWaypoints[h] = waypoints;
+        handoffAircraft[h] = aircraft;
+    }
+
+    void addGhost(FleetSnapshot frame, int index) {
+        if (ghostCount == ghostIds.length) {
+            int capacity = ghostCount * 2;
+            ghostIds = Arrays.copyOf(ghostIds, capacity);
+            ghostXs = Arrays.copyOf(ghostXs, capacity);
+            ghostYs = Arrays.copyOf(ghostYs, capacity);
+            ghostVxs = Arrays.copyOf(ghostVxs, capacity);
+            ghostVys = Arrays.copyOf(ghostVys, capacity);
+            ghostFlags = Arrays.copyOf(ghostFlags, capacity);
+        }
+        int g = ghostCount++;
+        ghostIds[g] = frame.getAircraftId(index);
+        ghostXs[g] = frame.getX(index);
+        ghostYs[g] = frame.getY(index);
+        ghostVxs[g] = frame.getVelocityX(index);
+        ghostVys[g] = frame.getVelocityY(index);
+        ghostFlags[g] = frame.getFlags(index);
+    }
+
+    /** The ghosts as frame entries without live aircraft. */
+    FleetSnapshot ghosts() {
+        int n = ghostCount;
+        return FleetSnapshot.of(0, 0, Arrays.copyOf(ghostIds, n), Arrays.copyOf(ghostXs, n), Arrays.copyOf(ghostYs, n),
+                Arrays.copyOf(ghostVxs, n), Arrays.copyOf(ghostVys, n), Arrays.copyOf(ghostFlags, n));
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(tick);
+        out.writeInt(handoffCount);
+        for (int h = 0; h < handoffCount; h++) {
+            out.writeInt(handoffIds[h]);
+            out.writeInt(handoffSpeeds[h]);
+            out.writeInt(handoffFrom[h]);
+            out.writeInt(handoffTo[h]);
+            out.writeDouble(handoffXs[h]);
+            out.writeDouble(handoffYs[h]);
+            out.writeBoolean(handoffAvoiding[h]);
+            out.writeInt(handoffWaypoints[h].length);
+            for (double value : handoffWaypoints[h]) {
+                out.writeDouble(value);
+            }
+        }
+        out.writeInt(ghostCount);
+        for (int g = 0; g < ghostCount; g++) {
+            out.writeInt(ghostIds[g]);
+            out.writeDouble(ghostXs[g]);
+            out.writeDouble(ghostYs[g]);
+            out.writeDouble(ghostVxs[g]);
+            out.writeDouble(ghostVys[g]);
+            out.writeByte(ghostFlags[g]);
+        }
+        out.flush();
+    }
+
+    static BoundaryMessage read(DataInputStream in) throws IOException {
+        BoundaryMessage message = new BoundaryMessage(in.readLong());
+        int handoffs = in.readInt();
+        message.handoffCount = handoffs;
+        message.handoffIds = new int[handoffs];
+        message.handoffSpeeds = new int[handoffs];
+        message.handoffFrom = new int[handoffs];
+        message.handoffTo = new int[handoffs];
+        message.handoffXs = new double[handoffs];
+        message.handoffYs = new double[handoffs];
+        message.handoffAvoiding = new boolean[handoffs];
+        message.handoffWaypoints = new double[handoffs][];
+        for (int h = 0; h < handoffs; h++) {
+            message.handoffIds[h] = in.readInt();
+            message.handoffSpeeds[h] = in.readInt();
+            message.handoffFrom[h] = in.readInt();
+            message.handoffTo[h] = in.readInt();
+            message.handoffXs[h] = in.readDouble();
+            message.handoffYs[h] = in.readDouble();
+            message.handoffAvoiding[h] = in.readBoolean();
+            double[] waypoints = new double[in.readInt()];
+            for (int w = 0; w < waypoints.length; w++) {
+                waypoints[w] = in.readDouble();
+            }
+            message.handoffWaypoints[h] = waypoints;
+        }
+        int ghosts = in.readInt();
+        message.ghostCount = ghosts;
+        message.ghostIds = new int[ghosts];
+        message.ghostXs = new double[ghosts];
+        message.ghostYs = new double[ghosts];
+        message.ghostVxs = new double[ghosts];
+        message.ghostVys = new double[ghosts];
+        message.ghostFlags = new byte[ghosts];
+        for (int g = 0; g < ghosts; g++) {
+            message.ghostIds[g] = in.readInt();
+            message.ghostXs[g] = in.readDouble();
+            message.ghostYs[g] = in.readDouble();
+            message.ghostVxs[g] = in.readDouble();
+            message.ghostVys[g] = in.readDouble();
+            message.ghostFlags[g] = in.readByte();
+        }
+        return message;
+    }
+}
@@ -0,0 +1,351 @@
+package shard;
+
+import aircraft.Aircraft;
+import aircraft.FleetPublisher;
+import aircraft.FleetSnapshot;
+import aircraft.FleetState;
+import aircraft.Route;
+import airport.Airport;
+import events.EventLog;
+import events.EventType;
+import manager.AirTrafficControl;
+import metrics.Histogram;
+import metrics.Metrics;
+import simulation.SimulationClock;
+import simulation.SimulationEngine;
+import simulation.TickListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One x-range of a simulation split across processes. Shard {@code k} of {@code n} owns the
+ * airports and aircraft with x in [bound[k-1], bound[k]) (unbounded at both ends) and
+ * exchanges a {@link BoundaryMessage} with each neighbour every engine tick, in lockstep:
+ * <ul>
+ *   <li>aircraft that crossed the boundary are handed off; the neighbour flies them on from
+ *       the same position, route and avoidance waypoints</li>
+ *   <li>aircraft within {@code zoneWidth} of the boundary are sent as ghosts, so the conflict
+ *       check sees the pairs that straddle it. Both shards see such a pair; only the one
+ *       owning the aircraft to reroute acts on it.</li>
+ * </ul>
+ * Every shard loads the whole airport network but only its own airports grant takeoffs.
+ * Neighbours connect over TCP: shard {@code k} listens on its own address and dials shard
+ * {@code k + 1}. If a neighbour disconnects, or sends nothing for the receive timeout (see
+ * {@link #setReceiveTimeout(long)}), the shard drops the link and carries on alone.
+ */
+public class Shard implements TickListener, Closeable {
+
+    private static final LongAdder HANDOFFS_OUT = Metrics.get().counter("shard.handoffs.out");
+    private static final LongAdder HANDOFFS_IN = Metrics.get().counter("shard.handoffs.in");
+    private static final Histogram EXCHANGE_MICROS = Metrics.get().histogram("shard.exchange.micros");
+
+    private final int index;
+    private final int shardCount;
+    private final double lowerX;
+    private final double upperX;
+    private final double zoneWidth;
+    private final FleetState fleet;
+    private final SimulationClock clock;
+    private final Map<Integer, Airport> airportsById = new HashMap<>();
+    private final FleetPublisher conflictFrames = new FleetPublisher();
+
+    private FleetPublisher localFrames;
+    private ShardLink left;
+    private ShardLink right;
+    private long tick;
+    private long receiveTimeoutMillis = 10000;
+    private volatile int ghostCount;
+
+    /**
+     * @param bounds     the {@code n - 1} increasing x coordinates between {@code n} shards
+     * @param zoneWidth  how far from a boundary aircraft are shared with the neighbour,
+     *                   normally the ATC safe distance
+     */
+    public Shard(int index, double[] bounds, double zoneWidth, FleetState fleet, List<Airport> airports,
+                 SimulationClock clock) {
+        for (int b = 1; b < bounds.length; b++) {
+            if (bounds[b] <= bounds[b - 1]) {
+                throw new IllegalArgumentException("Shard bounds must be increasing: " + bounds[b - 1] + ", " + bounds[b]);
+            }
+        }
+        if (index < 0 || index > bounds.length) {
+            throw new IllegalArgumentException("Shard " + index + " out of range for " + (bounds.length + 1) + " shards");
+        }
+        this.index = index;
+        this.shardCount = bounds.length + 1;
+        this.lowerX = index == 0 ? Double.NEGATIVE_INFINITY : bounds[index - 1];
+        this.upperX = index == bounds.length ? Double.POSITIVE_INFINITY : bounds[index];
+        this.zoneWidth = zoneWidth;
+        this.fleet = fleet;
+        this.clock = clock;
+        for (Airport airport : airports) {
+            // An aircraft reaching such an airport from the left would land before being handed off.
+            if (Arrays.binarySearch(bounds, airport.getX()) >= 0) {
+                throw new IllegalArgumentException(airport + " sits on a shard boundary; move the boundary");
+            }
+            airportsById.put(airport.getId(), airport);
+        }
+        Metrics.get().gauge("shard.ghosts", () -> ghostCount);
+    }
+
+    /** Parses comma-separated shard boundaries, e.g. {@code 15000,25000} for three shards. */
+    public static double[] parseBounds(String text) {
+        String[] fields = text.split(",");
+        double[] bounds = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            bounds[i] = Double.parseDouble(fields[i].strip());
+        }
+        return bounds;
+    }
+
+    /** Parses comma-separated {@code host:port} addresses, one per shard. */
+    public static List<InetSocketAddress> parsePeers(String text) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String field : text.split(",")) {
+            field = field.strip();
+            int colon = field.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected host:port, got '" + field + "'");
+            }
+            peers.add(new InetSocketAddress(field.substring(0, colon), Integer.parseInt(field.substring(colon + 1))));
+        }
+        return peers;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean owns(Airport airport) {
+        return owns(airport.getX());
+    }
+
+    public boolean owns(double x) {
+        return x >= lowerX && x < upperX;
+    }
+
+    /**
+     * Connects to the neighbouring shards; {@code peers} holds every shard's address, in
+     * shard order. Waits up to {@code timeoutMillis} for them to come up.
+     */
+    public void connect(List<InetSocketAddress> peers, long timeoutMillis) throws IOException {
+        if (peers.size() != shardCount) {
+            throw new IllegalArgumentException(shardCount + " shards need " + shardCount + " addresses, got " + peers.size());
+        }
+        ServerSocket server = null;
+        try {
+            if (index > 0) {
+                server = new ServerSocket();
+                server.setReuseAddress(true);
+                server.bind(peers.get(index));
+                server.setSoTimeout((int) timeoutMillis);
+            }
+            if (index + 1 < shardCount) {
+                System.out.println("Shard " + index + ": connecting to shard " + (index + 1) + " at " + peers.get(index + 1));
+                right = ShardLink.dial(index, index + 1, peers.get(index + 1), timeoutMillis);
+            }
+            if (server != null) {
+                System.out.println("Shard " + index + ": waiting for shard " + (index - 1) + " on " + peers.get(index));
+                left = ShardLink.accept(index - 1, server);
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.out.println("Shard " + index + " of " + shardCount + " connected, owns x in [" + lowerX + ", " + upperX + ").");
+    }
+
+    /**
+     * How long, in wall-clock milliseconds, to wait for a neighbour's message each tick before
+     * giving the neighbour up as hung. Defaults to 10 s.
+     */
+    public void setReceiveTimeout(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("receive timeout must be positive: " + millis);
+        }
+        this.receiveTimeoutMillis = millis;
+    }
+
+    /**
+     * Hooks the shard into {@code engine}'s tick, and makes {@code atc} check the local fleet
+     * together with the neighbours' ghosts.
+     */
+    public void attach(SimulationEngine engine, AirTrafficControl atc) {
+        this.localFrames = engine.getPublisher();
+        engine.setTickListener(this);
+        engine.setSkipIdleTime(false);
+        atc.setSnapshotSource(conflictFrames);
+    }
+
+    @Override
+    public void afterAdvance(long nowMillis) {
+        FleetSnapshot frame = localFrames.latest();
+        BoundaryMessage toLeft = new BoundaryMessage(tick);
+        BoundaryMessage toRight = new BoundaryMessage(tick);
+        // Handed-off aircraft still close to the boundary, as ghosts for our own conflict check.
+        BoundaryMessage handedLeft = new BoundaryMessage(tick);
+        BoundaryMessage handedRight = new BoundaryMessage(tick);
+        for (int i = 0; i < frame.size(); i++) {
+            Aircraft aircraft = frame.getAircraft(i);
+            if (!frame.isAirborne(i) || aircraft == null) {
+                continue;
+            }
+            double x = frame.getX(i);
+            if (left != null && x < lowerX) {
+                toLeft.addHandoff(aircraft, x, frame.getY(i));
+                if (x >= lowerX - zoneWidth) {
+                    handedLeft.addGhost(frame, i);
+                }
+            } else if (right != null && x >= upperX) {
+                toRight.addHandoff(aircraft, x, frame.getY(i));
+                if (x < upperX + zoneWidth) {
+                    handedRight.addGhost(frame, i);
+                }
+            } else {
+                if (left != null && x < lowerX + zoneWidth) {
+                    toLeft.addGhost(frame, i);
+                }
+                if (right != null && x >= upperX - zoneWidth) {
+                    toRight.addGhost(frame, i);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        left = send(left, toLeft);
+        right = send(right, toRight);
+        handOff(toLeft, left, nowMillis);
+        handOff(toRight, right, nowMillis);
+        BoundaryMessage fromLeft = receive(left);
+        BoundaryMessage fromRight = receive(right);
+        EXCHANGE_MICROS.record((System.nanoTime() - start) / 1000);
+        if (fromLeft == null) {
+            left = null;
+        }
+        if (fromRight == null) {
+            right = null;
+        }
+        takeOver(fromLeft);
+        takeOver(fromRight);
+        tick++;
+
+        // The conflict check sees our fleet after the exchange plus, near each boundary, the
+        // neighbour's: its ghosts and the aircraft we just handed to it.
+        List<FleetSnapshot> remote = new ArrayList<>(4);
+        if (fromLeft != null) {
+            remote.add(fromLeft.ghosts());
+            remote.add(handedLeft.ghosts());
+        }
+        if (fromRight != null) {
+            remote.add(fromRight.ghosts());
+            remote.add(handedRight.ghosts());
+        }
+        FleetSnapshot combined = FleetSnapshot.capture(fleet, frame.getEpoch(), nowMillis);
+        int ghosts = 0;
+        for (FleetSnapshot entries : remote) {
+            combined = FleetSnapshot.concat(combined, entries);
+            ghosts += entries.size();
+        }
+        ghostCount = ghosts;
+        conflictFrames.publish(combined);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (left != null) {
+            left.close();
+        }
+        if (right != null) {
+            right.close();
+        }
+    }
+
+    private ShardLink send(ShardLink link, BoundaryMessage message) {
+        if (link == null) {
+            return null;
+        }
+        try {
+            link.send(message);
+            return link;
+        } catch (IOException e) {
+            System.out.println("Shard " + index + ": lost shard " + link.getPeer() + " (" + e.getMessage() + "), continuing alone.");
+            return null;
+        }
+    }
+
+    private BoundaryMessage receive(ShardLink link) {
+        if (link == null) {
+            return null;
+        }
+        try {
+            BoundaryMessage message = link.receive(receiveTimeoutMillis);
+            if (message == null) {
+                System.out.println("Shard " + index + ": shard " + link.getPeer() + " disconnected, continuing alone.");
+            } else if (message.tick != tick) {
+                throw new IllegalStateException("Shard " + link.getPeer() + " sent tick " + message.tick
+                        + " while shard " + index + " is at tick " + tick);
+            }
+            return message;
+        } catch (TimeoutException e) {
+            System.out.println("Shard " + index + ": shard " + link.getPeer() + " sent nothing for "
+                    + receiveTimeoutMillis + " ms, continuing alone.");
+            try {
+                link.close(); // the neighbour then sees us disconnect and carries on alone too
+            } catch (IOException closeFailed) {
+                // already unusable
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Stops flying the aircraft sent to a neighbour; kept flying here if the send failed.
+    private void handOff(BoundaryMessage sent, ShardLink link, long nowMillis) {
+        if (link == null) {
+            return;
+        }
+        for (int h = 0; h < sent.handoffCount; h++) {
+            sent.handoffAircraft[h].handOff();
+            EventLog.get().publish(EventType.HANDED_OFF, sent.handoffIds[h], index, link.getPeer(),
+                    sent.handoffXs[h], sent.handoffYs[h], nowMillis);
+        }
+        HANDOFFS_OUT.add(sent.handoffCount);
+    }
+
+    private void takeOver(BoundaryMessage received) {
+        if (received == null) {
+            return;
+        }
+        for (int h = 0; h < received.handoffCount; h++) {
+            Route route = new Route(airport(received.handoffFrom[h]), airport(received.handoffTo[h]));
+            double[] waypoints = received.handoffWaypoints[h];
+            for (int w = 0; w < waypoints.length; w += 2) {
+                route.addWaypoint(waypoints[w], waypoints[w + 1]);
+            }
+            Aircraft aircraft = fleet.add(received.handoffIds[h], received.handoffSpeeds[h], clock);
+            aircraft.resumeFlight(route, received.handoffXs[h], received.handoffYs[h], received.handoffAvoiding[h]);
+        }
+        HANDOFFS_IN.add(received.handoffCount);
+    }
+
+    private Airport airport(int id) {
+        Airport airport = airportsById.get(id);
+        if (airport == null) {
+            throw new IllegalStateException("Shard " + index + " has no airport " + id + "; all shards need the same network");
+        }
+        return airport;
+    }
+}
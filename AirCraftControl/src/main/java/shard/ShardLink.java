@@ -0,0 +1,132 @@
+package shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * TCP connection to a neighbouring shard. Incoming messages are read by a background thread
+ * into a queue, so both sides can send their (possibly large) message before reading the
+ * other's without deadlocking on full socket buffers.
+ */
+final class ShardLink implements Closeable {
+
+    private static final BoundaryMessage CLOSED = new BoundaryMessage(-1);
+
+    private final int peer;
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final BlockingQueue<BoundaryMessage> inbox = new LinkedBlockingQueue<>();
+    private volatile boolean open = true;
+
+    private ShardLink(int peer, Socket socket) throws IOException {
+        this.peer = peer;
+        this.socket = socket;
+        socket.setTcpNoDelay(true); // one small message per tick, latency is everything
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        Thread.ofPlatform().name("ShardLink-" + peer).daemon().start(() -> readLoop(in));
+    }
+
+    /**
+     * Connects to {@code peer} at {@code address}, retrying until it listens or
+     * {@code timeoutMillis} have passed.
+     */
+    static ShardLink dial(int self, int peer, InetSocketAddress address, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, (int) Math.max(1, deadline - System.currentTimeMillis()));
+                new DataOutputStream(socket.getOutputStream()).writeInt(self);
+                return new ShardLink(peer, socket);
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException("Shard " + peer + " at " + address + " did not come up", e);
+                }
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to shard " + peer, interrupted);
+                }
+            }
+        }
+    }
+
+    /** Accepts the connection of {@code peer} on {@code server}. */
+    static ShardLink accept(int peer, ServerSocket server) throws IOException {
+        Socket socket = server.accept();
+        int from = new DataInputStream(socket.getInputStream()).readInt();
+        if (from != peer) {
+            socket.close();
+            throw new IOException("Expected shard " + peer + " to connect, got shard " + from);
+        }
+        return new ShardLink(peer, socket);
+    }
+
+    int getPeer() {
+        return peer;
+    }
+
+    void send(BoundaryMessage message) throws IOException {
+        message.write(out);
+    }
+
+    /**
+     * The next message from the peer, or null once it has disconnected.
+     *
+     * @throws TimeoutException if none arrives within {@code timeoutMillis}; the peer is still
+     *                          connected but has stopped keeping up
+     */
+    BoundaryMessage receive(long timeoutMillis) throws InterruptedException, TimeoutException {
+        if (!open && inbox.isEmpty()) {
+            return null;
+        }
+        BoundaryMessage message = inbox.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (message == null) {
+            throw new TimeoutException("no message from shard " + peer + " in " + timeoutMillis + " ms");
+        }
+        if (message == CLOSED) {
+            open = false;
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            while (true) {
+                inbox.put(BoundaryMessage.read(in));
+            }
+        } catch (EOFException e) {
+            // peer closed the connection
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                System.out.println("Lost connection to shard " + peer + ": " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inbox.add(CLOSED);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package simulation;
+
+/**
+ * Supplies aircraft to a running simulation over time, e.g. from a flight schedule, instead
+ * of the whole fleet being created up front. The engine polls it at the start of every tick.
+ */
+public interface FlightSource {
+
+    /**
+     * Adds every flight due by {@code nowMillis} to the fleet.
+     *
+     * @return number of flights added
+     */
+    int release(long nowMillis);
+
+    /**
+     * Time at which the next flight is due, or {@code Long.MAX_VALUE} once all have been released.
+     */
+    long nextReleaseMillis();
+}
@@ -0,0 +1,26 @@
+package simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated time is wall time.
+ */
+public class RealTimeClock implements SimulationClock {
+
+    static final RealTimeClock INSTANCE = new RealTimeClock();
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public long toWallNanos(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
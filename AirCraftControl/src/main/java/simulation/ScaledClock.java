@@ -0,0 +1,48 @@
+package simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated time runs {@code speed} times faster than wall time, starting at the
+ * wall time the clock was created (or a given time).
+ */
+public class ScaledClock implements SimulationClock {
+
+    private final double speed;
+    private final long startMillis;
+    private final long startNanos;
+
+    public ScaledClock(double speed) {
+        this(speed, System.currentTimeMillis());
+    }
+
+    /** Starts at {@code startMillis} of simulated time instead, e.g. to resume a checkpoint. */
+    public ScaledClock(double speed, long startMillis) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        this.speed = speed;
+        this.startMillis = startMillis;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return startMillis + (long) (elapsedNanos * speed / 1_000_000);
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(toWallNanos(millis));
+    }
+
+    @Override
+    public long toWallNanos(long millis) {
+        return (long) (TimeUnit.MILLISECONDS.toNanos(millis) / speed);
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+}
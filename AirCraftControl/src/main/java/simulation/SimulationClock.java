@@ -0,0 +1,25 @@
+package simulation;
+
+/**
+ * Source of simulated time. Everything that used to read the wall clock or sleep a fixed
+ * number of milliseconds goes through a clock, so a scenario can run in real time, scaled
+ * (e.g. 100x) or in virtual time as fast as the CPU allows.
+ */
+public interface SimulationClock {
+
+    /** Current simulated time in milliseconds. */
+    long currentTimeMillis();
+
+    /** Blocks the calling thread for the given amount of simulated time. */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Wall-clock nanoseconds to wait for the given simulated duration, for timed waits
+     * on locks and schedulers that only understand wall time.
+     */
+    long toWallNanos(long millis);
+
+    static SimulationClock realTime() {
+        return RealTimeClock.INSTANCE;
+    }
+}
@@ -0,0 +1,325 @@
+package simulation;
+
+import aircraft.Aircraft;
+import aircraft.FleetPublisher;
+import aircraft.FleetState;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import manager.AirTrafficControl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the whole fleet from a single fixed-rate tick instead of one thread per aircraft.
+ * Each tick books grounded aircraft's flights and takes off those whose time has come, advances every airborne aircraft and,
+ * every {@code checkIntervalMillis}, runs the ATC conflict check.
+ * <p>
+ * With a {@link VirtualClock} the engine does not wait between ticks; it advances the clock
+ * itself and, while nothing is airborne, jumps straight to the next possible takeoff.
+ */
+public class SimulationEngine {
+
+    private final List<Aircraft> aircraftList;
+    private final FleetState fleet; // null when driving a plain list
+    private final AirTrafficControl atc;
+    private final int tickMillis;
+    private final int atcEveryTicks;
+    private final int workerCount;
+    private final SimulationClock clock;
+    private final FleetPublisher publisher = new FleetPublisher();
+    private FlightSource flights;
+    private TickListener tickListener;
+    private boolean skipIdleTime = true;
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService workers;
+    private volatile boolean running;
+    private long tickCount = 0;
+    private long updateCount = 0;
+    private long sweepPhase = 0; // ticks run before a restored checkpoint, modulo atcEveryTicks
+    private int firstGrounded = 0; // store slots below this have all taken off
+
+    public SimulationEngine(List<Aircraft> aircraftList, AirTrafficControl atc, int tickMillis, int workerCount) {
+        this(aircraftList, atc, tickMillis, workerCount, SimulationClock.realTime());
+    }
+
+    public SimulationEngine(List<Aircraft> aircraftList, AirTrafficControl atc, int tickMillis, int workerCount,
+                            SimulationClock clock) {
+        this(aircraftList, null, atc, tickMillis, workerCount, clock);
+    }
+
+    /**
+     * Drives every aircraft of {@code fleet}, updating and publishing it with bulk passes over
+     * the store's columns rather than aircraft by aircraft.
+     */
+    public SimulationEngine(FleetState fleet, AirTrafficControl atc, int tickMillis, int workerCount,
+                            SimulationClock clock) {
+        this(fleet.aircraft(), fleet, atc, tickMillis, workerCount, clock);
+    }
+
+    private SimulationEngine(List<Aircraft> aircraftList, FleetState fleet, AirTrafficControl atc, int tickMillis,
+                             int workerCount, SimulationClock clock) {
+        this.aircraftList = aircraftList;
+        this.fleet = fleet;
+        this.atc = atc;
+        this.tickMillis = tickMillis;
+        this.workerCount = Math.max(1, workerCount);
+        this.clock = clock;
+        this.atcEveryTicks = atc == null ? 1 : Math.max(1, atc.getCheckIntervalMillis() / tickMillis);
+        if (atc != null) {
+            atc.setSnapshotSource(publisher);
+        }
+    }
+
+    /**
+     * Lets {@code flights} add aircraft to the fleet as the simulation runs. Needs an engine
+     * built on a {@link FleetState}, whose aircraft list grows with the store.
+     */
+    public void setFlightSource(FlightSource flights) {
+        if (fleet == null) {
+            throw new IllegalStateException("A flight source needs an engine built on a FleetState");
+        }
+        this.flights = flights;
+    }
+
+    public void setTickListener(TickListener tickListener) {
+        this.tickListener = tickListener;
+    }
+
+    /**
+     * Whether a virtual-time run may jump over periods with nothing airborne (the default).
+     * Engines that tick in lockstep with others, such as airspace shards, must step every tick.
+     */
+    public void setSkipIdleTime(boolean skipIdleTime) {
+        this.skipIdleTime = skipIdleTime;
+    }
+
+    public synchronized void start() {
+        if (ticker != null) {
+            throw new IllegalStateException("Simulation engine already started");
+        }
+        if (workerCount > 1) {
+            workers = Executors.newFixedThreadPool(workerCount);
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "simulation-tick"));
+        running = true;
+        if (clock instanceof VirtualClock virtualClock) {
+            ticker.execute(() -> runAsFastAsPossible(virtualClock, Long.MAX_VALUE));
+        } else {
+            ticker.scheduleAtFixedRate(this::safeTick, 0, clock.toWallNanos(tickMillis), TimeUnit.NANOSECONDS);
+        }
+        System.out.println("Simulation engine started: tick " + tickMillis + " ms, " + workerCount + " worker(s).");
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        if (ticker == null) {
+            return;
+        }
+        running = false;
+        ticker.shutdown();
+        ticker.awaitTermination(5, TimeUnit.SECONDS);
+        if (workers != null) {
+            workers.shutdown();
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        System.out.println("Simulation engine stopped after " + tickCount + " ticks.");
+    }
+
+    /**
+     * Runs one simulation step. Called by the ticker, but can also be called directly to
+     * step the simulation by hand.
+     */
+    public void tick() {
+        double seconds = tickMillis / 1000.0;
+        if (flights != null) {
+            flights.release(clock.currentTimeMillis());
+        }
+
+        // Grounded aircraft book their flight in list order on their first tick, then take
+        // off on the tick their booked time comes.
+        for (Aircraft aircraft : groundedCandidates()) {
+            aircraft.requestTakeOff();
+            aircraft.takeOffIfDue();
+        }
+
+        if (workers == null) {
+            updateCount += advance(0, aircraftList.size(), seconds);
+        } else {
+            updateCount += advanceInParallel(seconds);
+        }
+        // One consistent frame per tick; ATC below and the GUI read it instead of the live fleet.
+        if (fleet != null) {
+            publisher.publish(fleet, clock.currentTimeMillis());
+        } else {
+            publisher.publish(aircraftList, clock.currentTimeMillis());
+        }
+        if (tickListener != null) {
+            tickListener.afterAdvance(clock.currentTimeMillis());
+        }
+
+        if (atc != null && (tickCount + sweepPhase) % atcEveryTicks == 0) {
+            atc.checkForConflicts();
+        }
+        tickCount++;
+    }
+
+    /**
+     * Steps the simulation on the calling thread, in virtual time, until the clock reaches
+     * {@code endMillis}. Deterministic for a single worker; used instead of {@link #start()}.
+     */
+    public void runUntil(long endMillis) {
+        if (!(clock instanceof VirtualClock virtualClock)) {
+            throw new IllegalStateException("runUntil needs a VirtualClock");
+        }
+        running = true;
+        if (workerCount > 1 && workers == null) {
+            workers = Executors.newFixedThreadPool(workerCount);
+        }
+        try {
+            runAsFastAsPossible(virtualClock, endMillis);
+        } finally {
+            running = false;
+            if (workers != null) {
+                workers.shutdown();
+                workers = null;
+            }
+        }
+    }
+
+    /**
+     * Writes where the engine is in its cycle of conflict sweeps, so a restored run sweeps on
+     * the same ticks. Tick and update counts are per run and start again from zero.
+     */
+    public void writeTo(CheckpointWriter out) throws IOException {
+        out.putLong((tickCount + sweepPhase) % atcEveryTicks);
+    }
+
+    public void readFrom(CheckpointReader in) {
+        sweepPhase = Math.floorMod(in.getLong() - tickCount, atcEveryTicks);
+    }
+
+    public FleetPublisher getPublisher() {
+        return publisher;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /** Aircraft position updates performed so far, summed over all ticks. */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Steps the simulation in virtual time until stopped or the end time is reached. The clock is advanced by one tick,
+     * or further when nothing is airborne and every grounded aircraft waits for separation.
+     */
+    private void runAsFastAsPossible(VirtualClock virtualClock, long endMillis) {
+        while (running && virtualClock.currentTimeMillis() < endMillis) {
+            safeTick();
+            long nextTick = virtualClock.currentTimeMillis() + tickMillis;
+            long nextEvent = skipIdleTime ? nextTakeoffTimeMillis() : 0;
+            if (nextEvent > nextTick) {
+                long idleTicks = (nextEvent - nextTick + tickMillis - 1) / tickMillis;
+                nextTick += idleTicks * tickMillis;
+            }
+            virtualClock.advanceTo(Math.min(nextTick, endMillis));
+        }
+    }
+
+    /**
+     * Earliest time a grounded aircraft may take off, or 0 while any aircraft is airborne
+     * (the fleet has to be stepped every tick then).
+     */
+    private long nextTakeoffTimeMillis() {
+        long next = flights != null ? flights.nextReleaseMillis() : Long.MAX_VALUE;
+        if (fleet != null && fleet.hasAirborne()) {
+            return 0;
+        }
+        for (Aircraft aircraft : groundedCandidates()) {
+            if (aircraft.hasTakenOff()) {
+                if (!aircraft.isLanded()) {
+                    return 0;
+                }
+            } else if (aircraft.getTakeoffTimeMillis() >= 0) {
+                next = Math.min(next, aircraft.getTakeoffTimeMillis());
+            } else if (aircraft.getRoute() != null) {
+                next = Math.min(next, aircraft.getRoute().getFromAirport().getControlManager().getNextOperationTimeMillis());
+            }
+        }
+        return next == Long.MAX_VALUE ? 0 : next;
+    }
+
+    /**
+     * The aircraft that may still be on the ground. With a store, the leading run of slots
+     * that have all taken off is skipped, so a long schedule of finished flights is not
+     * rescanned every tick.
+     */
+    private List<Aircraft> groundedCandidates() {
+        if (fleet == null) {
+            return aircraftList;
+        }
+        int size = fleet.size();
+        firstGrounded = Math.min(firstGrounded, fleet.takeRegrounded()); // landed and flying another leg
+        while (firstGrounded < size && fleet.getAircraft(firstGrounded).hasTakenOff()) {
+            firstGrounded++;
+        }
+        return aircraftList.subList(firstGrounded, size);
+    }
+
+    private int advance(int from, int to, double seconds) {
+        if (fleet != null) {
+            return fleet.advance(from, to, seconds, clock.currentTimeMillis());
+        }
+        int updated = 0;
+        for (int i = from; i < to; i++) {
+            Aircraft aircraft = aircraftList.get(i);
+            if (aircraft.hasTakenOff() && !aircraft.isLanded()) {
+                aircraft.updatePosition(seconds);
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    private int advanceInParallel(double seconds) {
+        int size = aircraftList.size();
+        int chunk = (size + workerCount - 1) / workerCount;
+        List<Callable<Integer>> tasks = new ArrayList<>(workerCount);
+        for (int from = 0; from < size; from += chunk) {
+            int start = from;
+            int end = Math.min(size, from + chunk);
+            tasks.add(() -> advance(start, end, seconds));
+        }
+        int updated = 0;
+        try {
+            for (Future<Integer> future : workers.invokeAll(tasks)) {
+                updated += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Aircraft update failed", e.getCause());
+        }
+        return updated;
+    }
+
+    private void safeTick() {
+        // An exception escaping a scheduled task would silently cancel all further ticks.
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
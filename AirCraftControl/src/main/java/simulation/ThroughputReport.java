@@ -0,0 +1,56 @@
+package simulation;
+
+import airport.Airport;
+import airport.AirportControlManager;
+import airport.WaitStats;
+import manager.AirTrafficControl;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * End-of-run summary of how much simulation work was done per wall-clock second, plus
+ * per-airport traffic and slot waits. Used by headless runs, where nothing is rendered.
+ */
+public class ThroughputReport {
+
+    private final SimulationEngine engine; // null when aircraft ran on their own threads
+    private final AirTrafficControl atc;
+    private final List<Airport> airports;
+    private final long wallNanos;
+    private final long simulatedMillis;
+
+    public ThroughputReport(SimulationEngine engine, AirTrafficControl atc, List<Airport> airports,
+                            long wallNanos, long simulatedMillis) {
+        this.engine = engine;
+        this.atc = atc;
+        this.airports = airports;
+        this.wallNanos = wallNanos;
+        this.simulatedMillis = simulatedMillis;
+    }
+
+    public void print(PrintStream out) {
+        double seconds = Math.max(1e-9, wallNanos / 1e9);
+        out.println("=== Throughput ===");
+        out.printf("Wall time %.3f s, simulated time %.1f s (%.1fx real time)%n",
+                seconds, simulatedMillis / 1000.0, simulatedMillis / 1000.0 / seconds);
+        if (engine != null) {
+            out.printf("Ticks: %d (%.1f/s)%n", engine.getTickCount(), engine.getTickCount() / seconds);
+            out.printf("Aircraft updates: %d (%.1f/s)%n", engine.getUpdateCount(), engine.getUpdateCount() / seconds);
+        }
+        out.printf("Conflict checks: %d (%.1f/s), pairs tested: %d (%.1f/s)%n",
+                atc.getCheckCount(), atc.getCheckCount() / seconds, atc.getPairsTested(), atc.getPairsTested() / seconds);
+
+        WaitStats allWaits = new WaitStats();
+        for (Airport airport : airports) {
+            AirportControlManager control = airport.getControlManager();
+            WaitStats waits = control.getWaitStats();
+            allWaits.add(waits);
+            out.printf("Airport %d: %d takeoffs, %d landings, slot wait mean %.0f ms, p99 %d ms%n",
+                    airport.getId(), control.getTakeoffCount(), control.getLandingCount(),
+                    waits.getMeanMillis(), waits.getPercentileMillis(99));
+        }
+        out.printf("All airports: slot wait mean %.0f ms, p99 %d ms over %d grants%n",
+                allWaits.getMeanMillis(), allWaits.getPercentileMillis(99), allWaits.getCount());
+    }
+}
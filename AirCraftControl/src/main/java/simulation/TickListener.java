@@ -0,0 +1,10 @@
+package simulation;
+
+/**
+ * Hook into every {@link SimulationEngine} tick, run on the tick thread after the fleet has
+ * been advanced and its frame published, and before the conflict check.
+ */
+public interface TickListener {
+
+    void afterAdvance(long nowMillis);
+}
@@ -0,0 +1,67 @@
+package simulation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Simulated time that only moves when the driver (normally the {@link SimulationEngine})
+ * advances it, so a run goes as fast as the CPU allows and jumps over idle periods.
+ * Threads that {@link #sleep(long)} are woken once time has been advanced past their deadline.
+ */
+public class VirtualClock implements SimulationClock {
+
+    // Blocking waits elsewhere cannot be tied to virtual time, so they poll at this rate.
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private volatile long now;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        lock.lock();
+        try {
+            long deadline = now + millis;
+            while (now < deadline) {
+                advanced.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long toWallNanos(long millis) {
+        return POLL_NANOS;
+    }
+
+    public void advance(long millis) {
+        advanceTo(now + millis);
+    }
+
+    public void advanceTo(long millis) {
+        lock.lock();
+        try {
+            if (millis > now) {
+                now = millis;
+                advanced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
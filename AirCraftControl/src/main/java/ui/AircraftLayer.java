@@ -0,0 +1,213 @@
+package ui;
+
+import aircraft.FleetSnapshot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * Transparent layer the aircraft are drawn into, pixel by pixel, instead of going through
+ * {@code Graphics.drawImage} once per aircraft. Aircraft are binned into screen cells half a
+ * sprite wide: a cell with one aircraft shows its sprite, a cell with several shows one sprite
+ * and a count badge. Above {@link #DETAIL_LIMIT} aircraft the layer switches to a density map,
+ * one shaded square per occupied cell.
+ */
+class AircraftLayer {
+
+    static final int SPRITE_SIZE = 40;
+    static final int DETAIL_LIMIT = 300;
+
+    private static final int CELL = SPRITE_SIZE / 2;
+    private static final int AVOIDING_RGB = 0xFFFF0000;
+    private static final int[] DENSITY_RGB = densityPalette();
+
+    private final int[] sprite;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    // Per-cell aggregates, rebuilt every frame.
+    private int columns;
+    private int rows;
+    private int[] cellCounts = new int[0];
+    private int[] cellFirst = new int[0];      // snapshot index of the first aircraft in the cell
+    private boolean[] cellAvoiding = new boolean[0];
+    private int[] occupied = new int[0];       // indexes of non-empty cells
+    private int occupiedCount;
+
+    AircraftLayer(Image planeImage) {
+        BufferedImage scaled = new BufferedImage(SPRITE_SIZE, SPRITE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(planeImage, 0, 0, SPRITE_SIZE, SPRITE_SIZE, null);
+        g.dispose();
+        sprite = scaled.getRGB(0, 0, SPRITE_SIZE, SPRITE_SIZE, null, 0, SPRITE_SIZE);
+    }
+
+    /**
+     * Redraws the layer for {@code frame}; returns it ready to be drawn over the background.
+     */
+    BufferedImage render(FleetSnapshot frame, int width, int height, DoubleToIntFunction mapX, DoubleToIntFunction mapY) {
+        resize(Math.max(1, width), Math.max(1, height));
+        Arrays.fill(pixels, 0);
+        bin(frame, mapX, mapY);
+        if (isDetailed(frame)) {
+            drawSprites(frame, mapX, mapY);
+        } else {
+            drawDensity();
+        }
+        return image;
+    }
+
+    boolean isDetailed(FleetSnapshot frame) {
+        return frame.size() <= DETAIL_LIMIT;
+    }
+
+    /**
+     * Number of aircraft sharing the cell of aircraft {@code index} if it is the one drawn
+     * for that cell, otherwise 0. Valid after {@link #render} for the same frame.
+     */
+    int clusterSize(FleetSnapshot frame, int index, DoubleToIntFunction mapX, DoubleToIntFunction mapY) {
+        int cell = cellOf(mapX.applyAsInt(frame.getX(index)), mapY.applyAsInt(frame.getY(index)));
+        return cell < 0 || cellFirst[cell] != index ? 0 : cellCounts[cell];
+    }
+
+    private void resize(int width, int height) {
+        if (image != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        columns = (width + CELL - 1) / CELL;
+        rows = (height + CELL - 1) / CELL;
+        int cells = columns * rows;
+        cellCounts = new int[cells];
+        cellFirst = new int[cells];
+        cellAvoiding = new boolean[cells];
+        occupied = new int[cells];
+    }
+
+    private void bin(FleetSnapshot frame, DoubleToIntFunction mapX, DoubleToIntFunction mapY) {
+        for (int k = 0; k < occupiedCount; k++) {
+            int cell = occupied[k];
+            cellCounts[cell] = 0;
+            cellAvoiding[cell] = false;
+        }
+        occupiedCount = 0;
+        for (int i = 0; i < frame.size(); i++) {
+            int cell = cellOf(mapX.applyAsInt(frame.getX(i)), mapY.applyAsInt(frame.getY(i)));
+            if (cell < 0) {
+                continue;
+            }
+            if (cellCounts[cell]++ == 0) {
+                cellFirst[cell] = i;
+                occupied[occupiedCount++] = cell;
+            }
+            cellAvoiding[cell] |= frame.isInConflictAvoidance(i);
+        }
+    }
+
+    private int cellOf(int screenX, int screenY) {
+        if (screenX < 0 || screenY < 0 || screenX >= width || screenY >= height) {
+            return -1;
+        }
+        return (screenY / CELL) * columns + screenX / CELL;
+    }
+
+    private void drawSprites(FleetSnapshot frame, DoubleToIntFunction mapX, DoubleToIntFunction mapY) {
+        for (int k = 0; k < occupiedCount; k++) {
+            int cell = occupied[k];
+            int i = cellFirst[cell];
+            int left = mapX.applyAsInt(frame.getX(i)) - SPRITE_SIZE / 2;
+            int top = mapY.applyAsInt(frame.getY(i)) - SPRITE_SIZE / 2;
+            blitSprite(left, top);
+            if (cellAvoiding[cell]) {
+                outline(left, top, SPRITE_SIZE, AVOIDING_RGB);
+            }
+        }
+    }
+
+    private void drawDensity() {
+        for (int k = 0; k < occupiedCount; k++) {
+            int cell = occupied[k];
+            int shade = Math.min(DENSITY_RGB.length - 1, 31 - Integer.numberOfLeadingZeros(cellCounts[cell]));
+            int left = (cell % columns) * CELL;
+            int top = (cell / columns) * CELL;
+            fill(left + 1, top + 1, CELL - 2, CELL - 2, DENSITY_RGB[shade]);
+            if (cellAvoiding[cell]) {
+                outline(left, top, CELL, AVOIDING_RGB);
+            }
+        }
+    }
+
+    private void blitSprite(int left, int top) {
+        int x0 = Math.max(0, left);
+        int x1 = Math.min(width, left + SPRITE_SIZE);
+        int y0 = Math.max(0, top);
+        int y1 = Math.min(height, top + SPRITE_SIZE);
+        for (int y = y0; y < y1; y++) {
+            int src = (y - top) * SPRITE_SIZE - left;
+            int dst = y * width;
+            for (int x = x0; x < x1; x++) {
+                int argb = sprite[src + x];
+                int alpha = argb >>> 24;
+                if (alpha == 255) {
+                    pixels[dst + x] = argb;
+                } else if (alpha != 0) {
+                    pixels[dst + x] = over(argb, pixels[dst + x]);
+                }
+            }
+        }
+    }
+
+    private void fill(int left, int top, int w, int h, int argb) {
+        int x0 = Math.max(0, left);
+        int x1 = Math.min(width, left + w);
+        int y1 = Math.min(height, top + h);
+        for (int y = Math.max(0, top); y < y1 && x0 < x1; y++) {
+            Arrays.fill(pixels, y * width + x0, y * width + x1, argb);
+        }
+    }
+
+    private void outline(int left, int top, int size, int argb) {
+        fill(left, top, size, 1, argb);
+        fill(left, top + size - 1, size, 1, argb);
+        fill(left, top, 1, size, argb);
+        fill(left + size - 1, top, 1, size, argb);
+    }
+
+    // Straight-alpha "source over" of two ARGB pixels.
+    private static int over(int src, int dst) {
+        int sa = src >>> 24;
+        int da = dst >>> 24;
+        int outA = sa + da * (255 - sa) / 255;
+        if (outA == 0) {
+            return 0;
+        }
+        int r = channel(src >> 16, sa, dst >> 16, da, outA);
+        int g = channel(src >> 8, sa, dst >> 8, da, outA);
+        int b = channel(src, sa, dst, da, outA);
+        return outA << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int channel(int src, int sa, int dst, int da, int outA) {
+        return ((src & 0xFF) * sa + (dst & 0xFF) * da * (255 - sa) / 255) / outA;
+    }
+
+    // Blue for single aircraft up to red for cells holding thousands, one shade per doubling.
+    private static int[] densityPalette() {
+        int[] palette = new int[12];
+        for (int i = 0; i < palette.length; i++) {
+            float hue = 0.66f * (1 - i / (float) (palette.length - 1));
+            palette[i] = Color.HSBtoRGB(hue, 0.9f, 0.9f) | 0xFF000000;
+        }
+        return palette;
+    }
+}
@@ -1,15 +1,24 @@
 package ui;
 
 import aircraft.Aircraft;
+import aircraft.FleetPublisher;
+import aircraft.FleetSnapshot;
 import airport.Airport;
+import simulation.SimulationClock;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 
 public class SimulationGUI {
 
+    private static final Font TIME_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font WARNING_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final double GRID_SPACING = 2000; // world units between grid lines
+
     private JFrame frame;
     private SimulationPanel panel;
     private List<Aircraft> aircraftList;
@@ -17,20 +26,29 @@ public class SimulationGUI {
 
     private List<String> warningsList = new ArrayList<>();
     private long simulationStartTime;
+    private final SimulationClock clock;
+    private volatile FleetPublisher fleetSource;
 
     private final double worldXMax = 20000;
     private final double worldYMax = 12000;
 
     private Image planeImage;
+    private AircraftLayer aircraftLayer;
     private double scaleFactor = 0.05;
 
 
     public SimulationGUI(List<Aircraft> aircraftList, List<Airport> airportList) {
+        this(aircraftList, airportList, SimulationClock.realTime());
+    }
+
+    public SimulationGUI(List<Aircraft> aircraftList, List<Airport> airportList, SimulationClock clock) {
         this.aircraftList = aircraftList;
+        this.clock = clock;
         this.airportList = airportList;
         planeImage = new ImageIcon(getClass().getResource("/plane.png")).getImage();
+        aircraftLayer = new AircraftLayer(planeImage);
 
-        simulationStartTime = System.currentTimeMillis();
+        simulationStartTime = clock.currentTimeMillis();
         frame = new JFrame("Air Traffic Control Simulation");
         frame.setSize(1200, 800);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -45,6 +63,27 @@ public class SimulationGUI {
         timer.start();
     }
 
+    /**
+     * Draws the frames published by the engine instead of reading the live aircraft.
+     */
+    public void setFleetSource(FleetPublisher fleetSource) {
+        this.fleetSource = fleetSource;
+    }
+
+    /**
+     * Runs {@code action} on the event dispatch thread when the key described by
+     * {@code keyStroke} (e.g. "SPACE", "LEFT") is pressed while the window has focus.
+     */
+    public void bindKey(String keyStroke, Runnable action) {
+        panel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(keyStroke), keyStroke);
+        panel.getActionMap().put(keyStroke, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
     public void displayWarning(String message) {
         warningsList.add(message);
 
@@ -56,6 +95,9 @@ public class SimulationGUI {
 
     private class SimulationPanel extends JPanel {
 
+        // Airports and grid only change with the panel size, so they are drawn once per size.
+        private transient BufferedImage background;
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
@@ -63,15 +105,42 @@ public class SimulationGUI {
         }
 
         private void drawScene(Graphics2D g2d) {
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
-
-            drawAirports(g2d);
+            if (background == null || background.getWidth() != getWidth() || background.getHeight() != getHeight()) {
+                background = renderBackground();
+            }
+            g2d.drawImage(background, 0, 0, null);
             drawAircraft(g2d);
             drawSimulationTime(g2d);
             drawWarnings(g2d);
         }
 
+        private BufferedImage renderBackground() {
+            BufferedImage image = getGraphicsConfiguration() != null
+                    ? getGraphicsConfiguration().createCompatibleImage(Math.max(1, getWidth()), Math.max(1, getHeight()))
+                    : new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+            drawGrid(g2d);
+            drawAirports(g2d);
+            g2d.dispose();
+            return image;
+        }
+
+        private void drawGrid(Graphics2D g2d) {
+            g2d.setColor(new Color(235, 235, 235));
+            int top = mapY(worldYMax);
+            int bottom = mapY(0);
+            int left = mapX(0);
+            int right = mapX(worldXMax);
+            for (double x = 0; x <= worldXMax; x += GRID_SPACING) {
+                g2d.drawLine(mapX(x), top, mapX(x), bottom);
+            }
+            for (double y = 0; y <= worldYMax; y += GRID_SPACING) {
+                g2d.drawLine(left, mapY(y), right, mapY(y));
+            }
+        }
+
         private void drawAirports(Graphics2D g2d) {
             int airportWidth = 50;
             int airportHeight = 50;
@@ -90,28 +159,42 @@ public class SimulationGUI {
         }
 
         private void drawAircraft(Graphics2D g2d) {
-            for (Aircraft aircraft : aircraftList) {
-                int screenX = mapX(aircraft.getX());
-                int screenY = mapY(aircraft.getY());
-
-                g2d.drawImage(planeImage, screenX - 20, screenY - 20, 40, 40, this);
+            FleetSnapshot frame = currentFrame();
+            if (aircraftLayer.isDetailed(frame)) {
+                // Engine frames come once per tick; move sprites along their trajectories in between.
+                frame = frame.projectTo(clock.currentTimeMillis());
+            }
+            g2d.drawImage(aircraftLayer.render(frame, getWidth(), getHeight(), this::mapX, this::mapY), 0, 0, null);
+            if (!aircraftLayer.isDetailed(frame)) {
+                return;
+            }
 
-                if (aircraft.isInConflictAvoidance()) {
-                    g2d.setColor(Color.RED);
-                    g2d.drawRect(screenX - 20, screenY - 20, 40, 40);
+            // One label per drawn sprite; overlapping aircraft share it with a count.
+            g2d.setColor(Color.BLACK);
+            for (int i = 0; i < frame.size(); i++) {
+                int cluster = aircraftLayer.clusterSize(frame, i, this::mapX, this::mapY);
+                if (cluster == 0) {
+                    continue;
                 }
-
-                g2d.setColor(Color.BLACK);
-                g2d.drawString("A" + aircraft.getAircraftId(), screenX - 10, screenY - 25);
+                int screenX = mapX(frame.getX(i));
+                int screenY = mapY(frame.getY(i));
+                String label = cluster == 1 ? "A" + frame.getAircraftId(i) : "A" + frame.getAircraftId(i) + " +" + (cluster - 1);
+                g2d.drawString(label, screenX - 10, screenY - 25);
             }
         }
 
+        private FleetSnapshot currentFrame() {
+            FleetPublisher source = fleetSource;
+            FleetSnapshot frame = source != null ? source.latest() : null;
+            return frame != null ? frame : FleetSnapshot.capture(aircraftList, 0, clock.currentTimeMillis());
+        }
+
         private void drawSimulationTime(Graphics2D g2d) {
-            long elapsedMillis = System.currentTimeMillis() - simulationStartTime;
+            long elapsedMillis = clock.currentTimeMillis() - simulationStartTime;
             long seconds = elapsedMillis / 1000;
 
             g2d.setColor(Color.BLACK);
-            g2d.setFont(new Font("Arial", Font.BOLD, 16));
+            g2d.setFont(TIME_FONT);
             g2d.drawString("Simulation Time: " + seconds + "s", getWidth() - 200, 30);
         }
 
@@ -119,7 +202,7 @@ public class SimulationGUI {
             int warningY = 80;
 
             g2d.setColor(Color.RED);
-            g2d.setFont(new Font("Arial", Font.BOLD, 14));
+            g2d.setFont(WARNING_FONT);
 
             for (String warning : warningsList) {
                 g2d.drawString("⚠ " + warning, getWidth() - 350, warningY);
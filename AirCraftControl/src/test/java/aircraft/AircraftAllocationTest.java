@@ -0,0 +1,74 @@
+package aircraft;
+
+import airport.Airport;
+import events.EventLog;
+import events.Verbosity;
+import org.junit.jupiter.api.Test;
+import simulation.VirtualClock;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Position updates must not allocate once warmed up, cruising or flying an avoidance
+ * waypoint: the engine runs them for every airborne aircraft on every tick.
+ */
+class AircraftAllocationTest {
+
+    private static final int WARMUP_TICKS = 200_000;
+    private static final int MEASURED_TICKS = 10_000;
+
+    @Test
+    void updatePositionDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "allocation counting unsupported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // Events still go through the log, just not to the console.
+        EventLog log = EventLog.get();
+        Verbosity verbosity = log.getVerbosity();
+        log.setVerbosity(Verbosity.OFF);
+        log.setSink((type, aircraftId, arg1, arg2, x, y, timeMillis) -> { }, Verbosity.DEBUG);
+        try {
+            measure(threads);
+        } finally {
+            log.flush();
+            log.setSink(null, Verbosity.OFF);
+            log.setVerbosity(verbosity);
+        }
+    }
+
+    private static void measure(com.sun.management.ThreadMXBean threads) {
+        VirtualClock clock = new VirtualClock();
+        // So far apart that nobody lands during the test.
+        Airport from = new Airport(1, 0, 2, 0, clock);
+        Airport to = new Airport(2, 1e12, 2, 0, clock);
+        FleetState fleet = new FleetState();
+        Aircraft cruising = fleet.add(1, 800, clock);
+        Aircraft rerouted = fleet.add(2, 900, clock);
+        cruising.assignRoute(new Route(from, to));
+        rerouted.assignRoute(new Route(from, to));
+        assertTrue(cruising.tryTakeOff());
+        assertTrue(rerouted.tryTakeOff());
+        rerouted.rerouteVia(1e11, 5000);
+
+        tick(cruising, rerouted, WARMUP_TICKS);
+        long thread = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        tick(cruising, rerouted, MEASURED_TICKS);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(rerouted.isInConflictAvoidance());
+        assertTrue(!cruising.isLanded() && !rerouted.isLanded());
+        assertEquals(0, allocated, "bytes allocated over " + MEASURED_TICKS + " ticks");
+    }
+
+    private static void tick(Aircraft cruising, Aircraft rerouted, int ticks) {
+        for (int t = 0; t < ticks; t++) {
+            cruising.updatePosition(1);
+            rerouted.updatePosition(1);
+        }
+    }
+}